@@ -0,0 +1,151 @@
+package com.example.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a whole text file of about {@code fileSize} bytes in chunks of {@code chunkLength} chars, one operation per
+ * file read: the methods of {@link FileReaderCharacterStream} against a FileChannel or a mapping of the file
+ * decoded by a reused CharsetDecoder.
+ * <p>
+ * The file repeats roman_empire_history.txt, it is decoded as UTF-8 everywhere.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=UTF-8")
+@State(Scope.Benchmark)
+public class FileReaderCharacterStreamBenchmark {
+
+    @Param({"65536", "1048576", "67108864"})
+    int fileSize;
+
+    @Param({"512", "8192", "65536"})
+    int chunkLength;
+
+    private Path path;
+    private FileReaderCharacterStream fileReaderCharacterStream;
+    private ByteBuffer directBuffer;
+    private CharBuffer charBuffer;
+    private CharsetDecoder decoder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] text;
+        try (InputStream inputStream = getClass().getResourceAsStream("/roman_empire_history.txt")) {
+            if (inputStream == null)
+                throw new IOException("roman_empire_history.txt not found on the classpath");
+            text = inputStream.readAllBytes();
+        }
+
+        path = Files.createTempFile("benchmark", ".txt");
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            for (int written = 0; written < fileSize; written += text.length) {
+                outputStream.write(text);
+            }
+        }
+
+        fileReaderCharacterStream = new FileReaderCharacterStream(chunkLength, path.toString());
+        directBuffer = ByteBuffer.allocateDirect(chunkLength);
+        charBuffer = CharBuffer.allocate(chunkLength);
+        decoder = StandardCharsets.UTF_8.newDecoder();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public void perform(Blackhole blackhole) throws IOException {
+        fileReaderCharacterStream.perform(blackhole::consume);
+    }
+
+    @Benchmark
+    public void performEnhanced(Blackhole blackhole) throws IOException {
+        fileReaderCharacterStream.performEnhanced(blackhole::consume);
+    }
+
+    @Benchmark
+    public void performDirect(Blackhole blackhole) throws IOException {
+        fileReaderCharacterStream.performDirect(StandardCharsets.UTF_8, blackhole::consume);
+    }
+
+    @Benchmark
+    public void performLines(Blackhole blackhole) throws IOException {
+        fileReaderCharacterStream.performLines(StandardCharsets.UTF_8, blackhole::consume);
+    }
+
+    @Benchmark
+    public void fileChannelDecoder(Blackhole blackhole) throws IOException {
+        decoder.reset();
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = fileChannel.read(directBuffer) == -1;
+                directBuffer.flip();
+                decode(directBuffer, endOfInput, blackhole);
+                // A multi-byte character split by the read stays for the next one
+                directBuffer.compact();
+            }
+        }
+        flush(blackhole);
+    }
+
+    @Benchmark
+    public void mappedDecoder(Blackhole blackhole) throws IOException {
+        decoder.reset();
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            decode(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size()), true, blackhole);
+        }
+        flush(blackhole);
+    }
+
+    private void decode(ByteBuffer bytes, boolean endOfInput, Blackhole blackhole) throws IOException {
+        CoderResult result;
+        while ((result = decoder.decode(bytes, charBuffer, endOfInput)).isOverflow()) {
+            consume(blackhole);
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+    }
+
+    private void flush(Blackhole blackhole) {
+        decoder.flush(charBuffer);
+        consume(blackhole);
+    }
+
+    private void consume(Blackhole blackhole) {
+        charBuffer.flip();
+        blackhole.consume(charBuffer);
+        charBuffer.clear();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a whole file of {@code fileSize} bytes in chunks of {@code chunkLength} bytes, one operation per file read:
+ * the methods of {@link FileReaderInputStream} against the NIO alternatives.
+ * <p>
+ * Every benchmark hands each chunk to a Blackhole. The mapped one copies each chunk into a byte[] so that its pages
+ * are actually read, like the bytes of the other ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileReaderInputStreamBenchmark {
+
+    @Param({"65536", "1048576", "67108864"})
+    int fileSize;
+
+    @Param({"512", "8192", "65536"})
+    int chunkLength;
+
+    private Path path;
+    private FileReaderInputStream fileReaderInputStream;
+    private byte[] bytes;
+    private ByteBuffer heapBuffer;
+    private ByteBuffer directBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        path = Files.createTempFile("benchmark", ".bin");
+        Files.write(path, content);
+
+        fileReaderInputStream = new FileReaderInputStream(chunkLength, path.toString());
+        bytes = new byte[chunkLength];
+        heapBuffer = ByteBuffer.allocate(chunkLength);
+        directBuffer = ByteBuffer.allocateDirect(chunkLength);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public void perform(Blackhole blackhole) throws IOException {
+        fileReaderInputStream.perform(blackhole::consume);
+    }
+
+    @Benchmark
+    public void performEnhanced(Blackhole blackhole) throws IOException {
+        fileReaderInputStream.performEnhanced(blackhole::consume);
+    }
+
+    @Benchmark
+    public void performDirect(Blackhole blackhole) throws IOException {
+        fileReaderInputStream.performDirect(blackhole::consume);
+    }
+
+    @Benchmark
+    public void fileChannelHeapBuffer(Blackhole blackhole) throws IOException {
+        readFileChannel(heapBuffer, blackhole);
+    }
+
+    @Benchmark
+    public void fileChannelDirectBuffer(Blackhole blackhole) throws IOException {
+        readFileChannel(directBuffer, blackhole);
+    }
+
+    @Benchmark
+    public void mappedByteBuffer(Blackhole blackhole) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            while (mappedByteBuffer.hasRemaining()) {
+                int length = Math.min(bytes.length, mappedByteBuffer.remaining());
+                mappedByteBuffer.get(bytes, 0, length);
+                blackhole.consume(bytes);
+            }
+        }
+    }
+
+    private void readFileChannel(ByteBuffer buffer, Blackhole blackhole) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (fileChannel.read(buffer) != -1) {
+                buffer.flip();
+                blackhole.consume(buffer);
+                buffer.clear();
+            }
+        }
+    }
+}
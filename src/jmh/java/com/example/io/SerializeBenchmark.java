@@ -0,0 +1,109 @@
+package com.example.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes a small record with {@link Serialize}, Java serialization against the binary codec. The size
+ * of the payloads is printed once per trial.
+ * <p>
+ * The batch benchmarks write {@link #BATCH_SIZE} records, one payload per record against one stream for all of them,
+ * and read the stream back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializeBenchmark {
+
+    static final int BATCH_SIZE = 1000;
+
+    public record Line(String product, int quantity, double price) implements Serializable {
+    }
+
+    public record Order(long id, String reference, List<Line> lines) implements Serializable {
+    }
+
+    @Param({"JDK", "BINARY"})
+    String codecName;
+
+    private Codec codec;
+    private Order order;
+    private byte[] bytes;
+    private List<Order> batch;
+    private byte[] stream;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        codec = "JDK".equals(codecName) ? Serialize.JDK : Serialize.BINARY;
+        order = new Order(42L, "ref-1234", List.of(new Line("first", 1, 9.99), new Line("second", 2, 0.5)));
+        bytes = codec.encode(order);
+        System.out.println(codecName + " payload: " + bytes.length + " bytes");
+
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Order(i, "ref-" + i, order.lines()));
+        }
+        stream = writeStream().toByteArray();
+        System.out.println(codecName + " stream: " + stream.length / BATCH_SIZE + " bytes per record");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.encode(order);
+    }
+
+    @Benchmark
+    public Order decode() throws IOException, ClassNotFoundException {
+        return codec.decode(bytes, Order.class);
+    }
+
+    @Benchmark
+    public int writeEach() throws IOException {
+        int size = 0;
+        for (Order each : batch) {
+            size += Serialize.serialize(each, codec).length;
+        }
+        return size;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        try (ObjectWriter<Order> writer = Serialize.writer(out, Order.class, codec)) {
+            writer.writeAll(batch);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public long readStream() throws IOException {
+        long sum = 0;
+        try (ObjectReader<Order> reader = Serialize.reader(new ByteArrayInputStream(stream), Order.class, codec)) {
+            while (reader.hasNext()) {
+                sum += reader.next().id();
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Reads a file in chunks without blocking the calling thread, with reads issued ahead of the consumer.
+ * <p>
+ * The file is read through an AsynchronousFileChannel with up to {@code readAhead} chunks in flight, each one read
+ * into its own direct buffer at its own position. The chunks may complete in any order, they are delivered in file
+ * order, one at a time, on the threads completing the reads. A chunk's buffer is read again, for the chunk
+ * {@code readAhead} positions further, once it has been delivered: reads and processing overlap, and a few threads
+ * serve any number of concurrent reads.
+ * <p>
+ * The reader is a {@link Flow.Publisher}: every subscription reads the file from the start, and reads are only issued
+ * for chunks requested by the subscriber, so a slow subscriber slows the reads down instead of chunks piling up.
+ * Cancelling the subscription closes the file.
+ */
+public class AsyncFileReader implements Flow.Publisher<ByteBuffer> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncFileReader.class);
+
+    private final int length;
+    private final int readAhead;
+    private final Path path;
+    private ExecutorService executor;
+
+    public AsyncFileReader(int length, int readAhead, String path) {
+        if (length <= 0)
+            throw new IllegalArgumentException("Length must be a positive value");
+        if (readAhead <= 0)
+            throw new IllegalArgumentException("Read ahead must be a positive value");
+        this.length = length;
+        this.readAhead = readAhead;
+        this.path = Paths.get(Objects.requireNonNull(path, "Path cannot be null"));
+    }
+
+    /**
+     * Sets the threads the reads complete on, and the chunks are delivered on.
+     *
+     * @param executor The executor, or null for the default thread pool of the AsynchronousFileChannels (the default).
+     */
+    public AsyncFileReader executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Reads the whole file and provides each chunk to the consumer, in file order.
+     * <p>
+     * The consumer is called on the threads completing the reads, never concurrently. It receives a read-only view of
+     * the chunk's buffer, positioned at 0 and limited to the bytes read, only valid during the callback.
+     *
+     * @param consumer The consumer callback to process each chunk of data.
+     * @return A future completed once the file has been read, or completed exceptionally with the read error.
+     */
+    public CompletableFuture<Void> perform(Consumer<ByteBuffer> consumer) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        subscribe(new Flow.Subscriber<>() {
+
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer chunk) {
+                try {
+                    consumer.accept(chunk);
+                } catch (RuntimeException e) {
+                    subscription.cancel();
+                    done.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Reads the file for the subscriber, see the class description. Each chunk passed to onNext is a read-only view
+     * positioned at 0 and limited to the bytes read, only valid until onNext returns.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "Subscriber cannot be null");
+
+        AsynchronousFileChannel fileChannel;
+        long size;
+        try {
+            fileChannel = AsynchronousFileChannel.open(path, Collections.singleton(StandardOpenOption.READ), executor);
+            size = fileChannel.size();
+        } catch (IOException e) {
+            logger.info("Exception during read: {} on input data: {}", e.getMessage(), this);
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(e);
+            return;
+        }
+
+        ReadSubscription subscription = new ReadSubscription(subscriber, fileChannel, size);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncFileReader{path=" + path + ", length=" + length + ", readAhead=" + readAhead + "}";
+    }
+
+    /**
+     * One read of the file: the read-ahead slots and the delivery of the chunks in order.
+     * <p>
+     * Every signal goes through drain(), run by one thread at a time: whoever increments the work counter from 0 runs
+     * the loop, the others only make it loop once more. A slot is filled by a completion handler, which publishes it
+     * through its volatile state, then delivered and read again by the draining thread.
+     */
+    private final class ReadSubscription implements Flow.Subscription {
+
+        private static final int FREE = 0;
+        private static final int READING = 1;
+        private static final int READY = 2;
+        private static final int FAILED = 3;
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AsynchronousFileChannel fileChannel;
+        private final long size;
+        private final long chunkCount;
+        private final Slot[] slots = new Slot[readAhead];
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        // Only touched by the draining thread
+        private long issued;
+        private long delivered;
+        private boolean done;
+
+        ReadSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, AsynchronousFileChannel fileChannel,
+                         long size) {
+            this.subscriber = subscriber;
+            this.fileChannel = fileChannel;
+            this.size = size;
+            this.chunkCount = (size + length - 1) / length;
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Slot();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested chunks must be positive: " + n);
+            } else {
+                requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        void drain() {
+            if (work.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                if (!done) {
+                    deliver();
+                }
+                if (!done) {
+                    issueReads();
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Delivers the chunks read, in order, as long as they are requested.
+         */
+        private void deliver() {
+            while (true) {
+                if (cancelled) {
+                    terminate();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    terminate();
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                if (delivered == chunkCount) {
+                    terminate();
+                    subscriber.onComplete();
+                    return;
+                }
+
+                Slot slot = slots[(int) (delivered % slots.length)];
+                int state = slot.state;
+                if (state == FAILED) {
+                    logger.info("Exception during read: {} on input data: {}", slot.error.getMessage(),
+                            AsyncFileReader.this);
+                    terminate();
+                    subscriber.onError(slot.error);
+                    return;
+                }
+                if (state != READY || delivered >= requested.get()) {
+                    return;
+                }
+                if (slot.buffer.position() == 0) {
+                    // Nothing read: the file was truncated since it was opened
+                    terminate();
+                    subscriber.onComplete();
+                    return;
+                }
+
+                slot.view.limit(slot.buffer.position());
+                slot.view.position(0);
+                delivered++;
+                try {
+                    subscriber.onNext(slot.view);
+                } catch (RuntimeException e) {
+                    // A subscriber must not throw, it is not called anymore
+                    terminate();
+                    subscriber.onError(e);
+                    return;
+                }
+                slot.state = FREE;
+            }
+        }
+
+        /**
+         * Issues the reads of the requested chunks, at most one per slot.
+         */
+        private void issueReads() {
+            long limit = Math.min(chunkCount, Math.min(requested.get(), delivered + slots.length));
+            while (issued < limit) {
+                Slot slot = slots[(int) (issued % slots.length)];
+                slot.state = READING;
+                slot.position = issued * length;
+                slot.buffer.clear().limit((int) Math.min(length, size - slot.position));
+                issued++;
+                fileChannel.read(slot.buffer, slot.position, slot, slot);
+            }
+        }
+
+        private void terminate() {
+            done = true;
+            // Closing the channel fails the reads still in flight, their slots are never delivered
+            try {
+                fileChannel.close();
+            } catch (IOException e) {
+                logger.info("Exception during close: {} on input data: {}", e.getMessage(), AsyncFileReader.this);
+            }
+        }
+
+        /**
+         * A chunk being read, or read and waiting to be delivered.
+         */
+        private final class Slot implements CompletionHandler<Integer, Slot> {
+
+            private final ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+            private final ByteBuffer view = buffer.asReadOnlyBuffer();
+            private long position;
+            private Throwable error;
+            private volatile int state = FREE;
+
+            @Override
+            public void completed(Integer bytesRead, Slot slot) {
+                // A short read before the end of the chunk: read the rest at once
+                if (bytesRead >= 0 && buffer.hasRemaining() && !cancelled) {
+                    fileChannel.read(buffer, position + buffer.position(), this, this);
+                    return;
+                }
+                // The file was truncated: the chunk ends where the file does
+                state = READY;
+                drain();
+            }
+
+            @Override
+            public void failed(Throwable throwable, Slot slot) {
+                error = throwable;
+                state = FAILED;
+                drain();
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A compact binary codec for records and plain classes, several times smaller and faster than Java serialization.
+ * <p>
+ * The format is schema-based: the layout of a class is derived from the class on both sides (see
+ * {@link BinarySchema}), so a payload only holds the values of the properties, not their names nor class descriptors.
+ * Integers are varints, strings UTF-8 with a length prefix, null a single 0 byte. A payload starts with a format byte
+ * and a checksum of the layout, decoding it with a different version of the class throws an InvalidClassException.
+ * <p>
+ * Decoding only ever creates the requested class and the classes declared by its properties, unlike Java
+ * serialization which creates whatever class the bytes name.
+ * <p>
+ * Objects of unsupported classes are encoded by the fallback codec, a {@link JdkCodec} filtered by
+ * {@link JdkCodec#forType} by default: its payloads never start with the format byte, so decode tells them apart. A
+ * supported class is never decoded by the fallback, a payload without the format byte throws a
+ * StreamCorruptedException instead. Null is the single byte 0. The output buffers are pooled, encoding an object
+ * allocates little more than the returned array.
+ * <p>
+ * A stream of many objects of one class holds the format byte and the checksum once, then a frame per object: its
+ * length and the values of its properties. For an unsupported class the stream is one of the fallback codec.
+ * <p>
+ * Usage Example:
+ * ```java
+ * record Point(int x, int y, String label) {}
+ * <p>
+ * BinaryCodec codec = new BinaryCodec();
+ * byte[] bytes = codec.encode(new Point(1, 2, "a"));
+ * Point point = codec.decode(bytes, Point.class);
+ * ```
+ */
+public class BinaryCodec implements Codec {
+
+    /**
+     * The first byte of a payload of this codec. Java serialization streams start with 0xAC.
+     */
+    static final byte FORMAT = 0x01;
+
+    /**
+     * The payload of null, whatever the type.
+     */
+    private static final byte NULL = 0x00;
+
+    private static final int POOL_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Buffers grown past this capacity by a large object are not pooled, so they do not stay allocated.
+     */
+    private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+    private final Codec fallback;
+    private final BlockingQueue<BinaryOutput> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    public BinaryCodec() {
+        this(JdkCodec.filteredByType());
+    }
+
+    /**
+     * @param fallback Encodes the objects of unsupported classes, its payloads must not start with 0x01 nor be the
+     *                 single byte 0.
+     */
+    public BinaryCodec(Codec fallback) {
+        this.fallback = Objects.requireNonNull(fallback, "Fallback cannot be null");
+    }
+
+    /**
+     * Returns true if the objects of the class are encoded in the binary format, false if they go to the fallback.
+     */
+    public boolean supports(Class<?> type) {
+        return BinarySchema.of(type).isSupported();
+    }
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        if (object == null)
+            return new byte[]{NULL};
+        if (!supports(object.getClass())) {
+            return fallback.encode(object);
+        }
+
+        BinaryOutput out = acquire();
+        try {
+            encode(object, out);
+            return out.toByteArray();
+        } finally {
+            release(out);
+        }
+    }
+
+    /**
+     * Appends the payload of an object of a supported class to the output.
+     */
+    void encode(Object object, BinaryOutput out) throws IOException {
+        BinarySchema schema = BinarySchema.of(object.getClass());
+        out.writeByte(FORMAT);
+        out.writeInt(schema.fingerprint());
+        schema.write(object, out);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) throws IOException, ClassNotFoundException {
+        if (bytes.length == 0)
+            throw new EOFException("Empty payload");
+        if (bytes.length == 1 && bytes[0] == NULL)
+            return null;
+        if (bytes[0] != FORMAT) {
+            // Only unsupported classes are encoded by the fallback, never let the bytes pick it for the others
+            if (supports(type))
+                throw new StreamCorruptedException("Invalid format byte: " + bytes[0]);
+            return fallback.decode(bytes, type);
+        }
+
+        BinaryInput in = new BinaryInput(bytes, 0, bytes.length);
+        T object = decode(in, type);
+        if (in.remaining() > 0)
+            throw new StreamCorruptedException(in.remaining() + " bytes left after the object");
+        return object;
+    }
+
+    /**
+     * Reads the payload of an object of the given type, written by {@link #encode(Object, BinaryOutput)}.
+     */
+    <T> T decode(BinaryInput in, Class<T> type) throws IOException {
+        BinarySchema schema = BinarySchema.of(type);
+        if (!schema.isSupported())
+            throw new InvalidClassException(type.getName(), schema.getUnsupportedReason());
+
+        byte format = in.readByte();
+        if (format != FORMAT)
+            throw new StreamCorruptedException("Invalid format byte: " + format);
+        int fingerprint = in.readInt();
+        if (fingerprint != schema.fingerprint())
+            throw new InvalidClassException(type.getName(), "payload written with another layout of the class");
+
+        return type.cast(schema.read(in));
+    }
+
+    @Override
+    public <T> ObjectWriter<T> newWriter(OutputStream outputStream, Class<T> type) throws IOException {
+        BinarySchema schema = BinarySchema.of(type);
+        if (!schema.isSupported()) {
+            return fallback.newWriter(outputStream, type);
+        }
+
+        BinaryOutput header = new BinaryOutput(5);
+        header.writeByte(FORMAT);
+        header.writeInt(schema.fingerprint());
+        return new FramedObjectWriter<>(outputStream, header.toByteArray(), (object, frame) -> {
+            // Every frame has the layout of the header
+            if (object.getClass() != type)
+                throw new InvalidClassException(object.getClass().getName(), "not the type of the stream "
+                        + type.getName());
+            schema.write(object, frame);
+        });
+    }
+
+    @Override
+    public <T> ObjectReader<T> newReader(InputStream inputStream, Class<T> type) throws IOException {
+        BinarySchema schema = BinarySchema.of(type);
+        if (!schema.isSupported()) {
+            return fallback.newReader(inputStream, type);
+        }
+
+        InputStream buffered = FramedObjectReader.buffered(inputStream);
+        byte[] header = buffered.readNBytes(5);
+        if (header.length < 5)
+            throw new EOFException("Stream header missing");
+        BinaryInput headerInput = new BinaryInput(header, 0, header.length);
+        byte format = headerInput.readByte();
+        if (format != FORMAT)
+            throw new StreamCorruptedException("Invalid format byte: " + format);
+        if (headerInput.readInt() != schema.fingerprint())
+            throw new InvalidClassException(type.getName(), "stream written with another layout of the class");
+
+        return new FramedObjectReader<>(buffered, (bytes, length) -> {
+            BinaryInput in = new BinaryInput(bytes, 0, length);
+            T object = type.cast(schema.read(in));
+            if (in.remaining() > 0)
+                throw new StreamCorruptedException(in.remaining() + " bytes left after the object");
+            return object;
+        });
+    }
+
+    private BinaryOutput acquire() {
+        BinaryOutput out = pool.poll();
+        return out != null ? out : new BinaryOutput(INITIAL_CAPACITY);
+    }
+
+    private void release(BinaryOutput out) {
+        if (out.capacity() <= MAX_POOLED_CAPACITY) {
+            out.reset();
+            pool.offer(out);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the {@link BinaryCodec} format written by {@link BinaryOutput} from a byte array.
+ * <p>
+ * Every read checks the bytes left first: truncated input throws an EOFException, and a length is never trusted
+ * beyond the bytes left, so corrupted input cannot make it allocate a huge array.
+ */
+final class BinaryInput {
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final byte[] bytes;
+    private final int limit;
+    private int position;
+
+    BinaryInput(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    int remaining() {
+        return limit - position;
+    }
+
+    static int zigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long zigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    byte readByte() throws EOFException {
+        require(1);
+        return bytes[position++];
+    }
+
+    int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Varint longer than 5 bytes");
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Varint longer than 10 bytes");
+    }
+
+    int readInt() throws EOFException {
+        require(Integer.BYTES);
+        int value = (int) INT.get(bytes, position);
+        position += Integer.BYTES;
+        return value;
+    }
+
+    long readLong() throws EOFException {
+        require(Long.BYTES);
+        long value = (long) LONG.get(bytes, position);
+        position += Long.BYTES;
+        return value;
+    }
+
+    /**
+     * Reads a length written plus one.
+     *
+     * @return The length, or -1 for null.
+     */
+    int readLength() throws IOException {
+        int length = readVarInt() - 1;
+        if (length < -1 || length > remaining())
+            throw new StreamCorruptedException("Invalid length: " + length + ", bytes left: " + remaining());
+        return length;
+    }
+
+    byte[] readBytes() throws IOException {
+        int length = readLength();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+        position += length;
+        return value;
+    }
+
+    String readString() throws IOException {
+        int length = readLength();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private void require(int count) throws EOFException {
+        if (limit - position < count)
+            throw new EOFException("Unexpected end of input, " + count + " bytes needed, " + remaining() + " left");
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte array the {@link BinaryCodec} format is written to, reused from one object to the next.
+ * <p>
+ * Integers are written as varints, 7 bits per byte with the high bit set on every byte but the last, so small values
+ * take a single byte. Signed values are zigzag encoded first, so small negative values are small too. Lengths are
+ * written plus one, 0 stands for null.
+ */
+final class BinaryOutput {
+
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private byte[] bytes;
+    private int position;
+
+    BinaryOutput(int capacity) {
+        this.bytes = new byte[capacity];
+    }
+
+    void reset() {
+        position = 0;
+    }
+
+    int size() {
+        return position;
+    }
+
+    int capacity() {
+        return bytes.length;
+    }
+
+    static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[position++] = (byte) value;
+    }
+
+    /**
+     * Writes an unsigned varint, from 1 to 5 bytes.
+     */
+    void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+    }
+
+    /**
+     * Writes an unsigned varint, from 1 to 10 bytes.
+     */
+    void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+    }
+
+    void writeShort(int value) {
+        ensureCapacity(Short.BYTES);
+        SHORT.set(bytes, position, (short) value);
+        position += Short.BYTES;
+    }
+
+    void writeInt(int value) {
+        ensureCapacity(Integer.BYTES);
+        INT.set(bytes, position, value);
+        position += Integer.BYTES;
+    }
+
+    void writeLong(long value) {
+        ensureCapacity(Long.BYTES);
+        LONG.set(bytes, position, value);
+        position += Long.BYTES;
+    }
+
+    /**
+     * Writes the length of the bytes plus one and the bytes, or 0 for null.
+     */
+    void writeBytes(byte[] value) {
+        if (value == null) {
+            writeByte(0);
+            return;
+        }
+        writeVarInt(value.length + 1);
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, position, value.length);
+        position += value.length;
+    }
+
+    /**
+     * Writes the length of the UTF-8 bytes plus one and the bytes, or 0 for null. An ASCII string is copied char by
+     * char, without encoding it into a temporary array first.
+     */
+    void writeString(String value) {
+        if (value == null) {
+            writeByte(0);
+            return;
+        }
+
+        int length = value.length();
+        int start = position;
+        writeVarInt(length + 1);
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // Not ASCII: the UTF-8 length differs from the char count, start over
+                position = start;
+                writeBytes(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            bytes[position++] = (byte) c;
+        }
+    }
+
+    /**
+     * Writes the bytes as they are, without a length.
+     */
+    void write(byte[] value, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(value, offset, bytes, position, length);
+        position += length;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, position);
+    }
+
+    void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(bytes, 0, position);
+    }
+
+    private void ensureCapacity(int count) {
+        if (bytes.length - position < count) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + count));
+        }
+    }
+}
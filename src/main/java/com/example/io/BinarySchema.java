@@ -0,0 +1,486 @@
+package com.example.io;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * The layout of a class in the {@link BinaryCodec} format, derived from the class itself, one per class.
+ * <p>
+ * The properties of a record are its components, in order, read with their accessors and passed to the canonical
+ * constructor. The properties of another class are its instance fields and the ones of its superclasses, neither
+ * static nor transient, sorted by class then by name, read and written directly after a no-arg constructor: such a
+ * class needs one, of any visibility.
+ * <p>
+ * Accessors are MethodHandles created once per class. The getter of a primitive property returns the primitive, so
+ * writing it boxes nothing.
+ * <p>
+ * Supported property types: primitives and their wrappers, String, enums, byte[], List of any of these, and other
+ * supported classes, nested. A class with another property type is not supported, nor is a class whose members cannot
+ * be made accessible, and {@link BinaryCodec} falls back to its fallback codec for it.
+ * <p>
+ * Nested objects are written by value, without tracking their identity: an object referenced twice is written twice,
+ * and decoded as two equal copies. A recursive class, one that can reach its own type through its properties, such as
+ * a node referencing the next one, is not supported either, since its instances may reference themselves.
+ */
+final class BinarySchema {
+
+    private static final ClassValue<BinarySchema> SCHEMAS = new ClassValue<>() {
+        @Override
+        protected BinarySchema computeValue(Class<?> type) {
+            return new BinarySchema(type);
+        }
+    };
+
+    enum Kind {
+        BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, STRING, ENUM, BYTES, LIST, OBJECT
+    }
+
+    private final Class<?> type;
+    private final String unsupportedReason;
+    private final Property[] properties;
+    private final boolean record;
+
+    /**
+     * The canonical constructor of a record taking an Object[] of the components, or the no-arg constructor.
+     */
+    private final MethodHandle constructor;
+
+    // Computed on first use, since they depend on the schemas of the nested classes
+    private volatile String nestedUnsupportedReason;
+    private volatile boolean checked;
+    private volatile int fingerprint;
+    private volatile boolean fingerprinted;
+
+    private BinarySchema(Class<?> type) {
+        this.type = type;
+        this.record = type.isRecord();
+
+        Property[] properties = null;
+        MethodHandle constructor = null;
+        String unsupportedReason = null;
+        try {
+            if (type.isPrimitive() || type.isArray() || type.isInterface() || type.isEnum()
+                    || Modifier.isAbstract(type.getModifiers()) || type.getName().startsWith("java.")) {
+                unsupportedReason = "not a record or a concrete class: " + type.getName();
+            } else if (record) {
+                properties = recordProperties(type);
+                Class<?>[] componentTypes = Arrays.stream(type.getRecordComponents())
+                        .map(RecordComponent::getType)
+                        .toArray(Class<?>[]::new);
+                Constructor<?> canonical = type.getDeclaredConstructor(componentTypes);
+                canonical.setAccessible(true);
+                constructor = MethodHandles.lookup().unreflectConstructor(canonical)
+                        .asSpreader(Object[].class, componentTypes.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } else {
+                properties = fieldProperties(type);
+                Constructor<?> noArg = type.getDeclaredConstructor();
+                noArg.setAccessible(true);
+                constructor = MethodHandles.lookup().unreflectConstructor(noArg)
+                        .asType(MethodType.methodType(Object.class));
+            }
+        } catch (UnsupportedTypeException e) {
+            unsupportedReason = e.getMessage();
+        } catch (NoSuchMethodException e) {
+            unsupportedReason = "no " + (record ? "canonical" : "no-arg") + " constructor: " + type.getName();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Members of a module not opened to this one
+            unsupportedReason = "members not accessible: " + e.getMessage();
+        }
+
+        this.properties = properties;
+        this.constructor = constructor;
+        this.unsupportedReason = unsupportedReason;
+    }
+
+    static BinarySchema of(Class<?> type) {
+        return SCHEMAS.get(type);
+    }
+
+    /**
+     * Returns true if the class and every class nested in it are supported.
+     */
+    boolean isSupported() {
+        if (!checked) {
+            nestedUnsupportedReason = unsupportedReason(new HashSet<>(), new HashSet<>());
+            checked = true;
+        }
+        return nestedUnsupportedReason == null;
+    }
+
+    String getUnsupportedReason() {
+        isSupported();
+        return nestedUnsupportedReason;
+    }
+
+    /**
+     * @param path    The classes nesting this one, a class reached again from itself is recursive.
+     * @param visited The classes already checked, or being checked.
+     */
+    private String unsupportedReason(Set<Class<?>> path, Set<Class<?>> visited) {
+        if (unsupportedReason != null) {
+            return unsupportedReason;
+        }
+        if (path.contains(type)) {
+            return "recursive type, its instances may reference themselves: " + type.getName();
+        }
+        if (!visited.add(type)) {
+            return null;
+        }
+        path.add(type);
+        for (Property property : properties) {
+            for (ValueType valueType = property.type; valueType != null; valueType = valueType.element) {
+                if (valueType.kind == Kind.OBJECT) {
+                    String reason = of(valueType.raw).unsupportedReason(path, visited);
+                    if (reason != null) {
+                        return reason;
+                    }
+                }
+            }
+        }
+        path.remove(type);
+        return null;
+    }
+
+    /**
+     * Returns a checksum of the layout of the class and of the classes nested in it, written with every object to
+     * detect a payload decoded with another version of the class.
+     */
+    int fingerprint() {
+        if (!fingerprinted) {
+            StringBuilder layout = new StringBuilder();
+            describe(layout, new HashSet<>());
+            CRC32C crc = new CRC32C();
+            crc.update(layout.toString().getBytes(StandardCharsets.UTF_8));
+            fingerprint = (int) crc.getValue();
+            fingerprinted = true;
+        }
+        return fingerprint;
+    }
+
+    private void describe(StringBuilder layout, Set<Class<?>> visited) {
+        layout.append(type.getName());
+        if (!visited.add(type)) {
+            return;
+        }
+        layout.append('{');
+        for (Property property : properties) {
+            layout.append(property.name).append(':');
+            for (ValueType valueType = property.type; valueType != null; valueType = valueType.element) {
+                layout.append(valueType.primitive ? valueType.raw.getName() : valueType.kind.name()).append(' ');
+                if (valueType.kind == Kind.OBJECT) {
+                    of(valueType.raw).describe(layout, visited);
+                } else if (valueType.kind == Kind.ENUM) {
+                    layout.append(valueType.raw.getName());
+                    for (Object constant : valueType.constants) {
+                        layout.append(' ').append(((Enum<?>) constant).name());
+                    }
+                }
+            }
+            layout.append(';');
+        }
+        layout.append('}');
+    }
+
+    /**
+     * Writes the properties of the object, which must be an instance of exactly this class.
+     */
+    void write(Object object, BinaryOutput out) throws IOException {
+        try {
+            for (Property property : properties) {
+                MethodHandle getter = property.getter;
+                switch (property.type.primitive ? property.type.kind : Kind.OBJECT) {
+                    case BOOLEAN -> out.writeByte((boolean) getter.invokeExact(object) ? 1 : 0);
+                    case BYTE -> out.writeByte((byte) getter.invokeExact(object));
+                    case SHORT -> out.writeVarInt(BinaryOutput.zigZag((short) getter.invokeExact(object)));
+                    case CHAR -> out.writeVarInt((char) getter.invokeExact(object));
+                    case INT -> out.writeVarInt(BinaryOutput.zigZag((int) getter.invokeExact(object)));
+                    case LONG -> out.writeVarLong(BinaryOutput.zigZag((long) getter.invokeExact(object)));
+                    case FLOAT -> out.writeInt(Float.floatToRawIntBits((float) getter.invokeExact(object)));
+                    case DOUBLE -> out.writeLong(Double.doubleToRawLongBits((double) getter.invokeExact(object)));
+                    default -> writeValue(property.type, (Object) getter.invokeExact(object), out);
+                }
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("Cannot read the properties of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Writes a reference value: a single 0 byte for null, else a length or ordinal plus one, or a 1 byte followed by
+     * the value.
+     */
+    private static void writeValue(ValueType valueType, Object value, BinaryOutput out) throws IOException {
+        switch (valueType.kind) {
+            case STRING -> out.writeString((String) value);
+            case BYTES -> out.writeBytes((byte[]) value);
+            case ENUM -> out.writeVarInt(value == null ? 0 : ((Enum<?>) value).ordinal() + 1);
+            case LIST -> {
+                if (value == null) {
+                    out.writeByte(0);
+                    return;
+                }
+                List<?> list = (List<?>) value;
+                out.writeVarInt(list.size() + 1);
+                for (Object element : list) {
+                    writeValue(valueType.element, element, out);
+                }
+            }
+            default -> {
+                if (value == null) {
+                    out.writeByte(0);
+                    return;
+                }
+                out.writeByte(1);
+                switch (valueType.kind) {
+                    case BOOLEAN -> out.writeByte((Boolean) value ? 1 : 0);
+                    case BYTE -> out.writeByte((Byte) value);
+                    case SHORT -> out.writeVarInt(BinaryOutput.zigZag((Short) value));
+                    case CHAR -> out.writeVarInt((Character) value);
+                    case INT -> out.writeVarInt(BinaryOutput.zigZag((Integer) value));
+                    case LONG -> out.writeVarLong(BinaryOutput.zigZag((Long) value));
+                    case FLOAT -> out.writeInt(Float.floatToRawIntBits((Float) value));
+                    case DOUBLE -> out.writeLong(Double.doubleToRawLongBits((Double) value));
+                    default -> {
+                        // The layout of a nested object comes from the declared type, a subclass would not fit in it
+                        if (value.getClass() != valueType.raw)
+                            throw new InvalidClassException(value.getClass().getName(),
+                                    "not the declared type " + valueType.raw.getName());
+                        of(valueType.raw).write(value, out);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the properties written by {@link #write} and creates the object.
+     */
+    Object read(BinaryInput in) throws IOException {
+        Object[] values = new Object[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            ValueType valueType = properties[i].type;
+            values[i] = valueType.primitive ? readPrimitive(valueType.kind, in) : readValue(valueType, in);
+        }
+
+        try {
+            if (record) {
+                return (Object) constructor.invokeExact(values);
+            }
+            Object object = (Object) constructor.invokeExact();
+            for (int i = 0; i < properties.length; i++) {
+                properties[i].setter.invokeExact(object, values[i]);
+            }
+            return object;
+        } catch (RuntimeException e) {
+            // A record whose constructor rejects the values
+            throw (InvalidObjectException) new InvalidObjectException("Cannot create " + type.getName() + ": "
+                    + e.getMessage()).initCause(e);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("Cannot create " + type.getName(), e);
+        }
+    }
+
+    private static Object readPrimitive(Kind kind, BinaryInput in) throws IOException {
+        return switch (kind) {
+            case BOOLEAN -> in.readByte() != 0;
+            case BYTE -> in.readByte();
+            case SHORT -> (short) BinaryInput.zigZag(in.readVarInt());
+            case CHAR -> (char) in.readVarInt();
+            case INT -> BinaryInput.zigZag(in.readVarInt());
+            case LONG -> BinaryInput.zigZag(in.readVarLong());
+            case FLOAT -> Float.intBitsToFloat(in.readInt());
+            case DOUBLE -> Double.longBitsToDouble(in.readLong());
+            default -> throw new IllegalArgumentException("Not a primitive kind: " + kind);
+        };
+    }
+
+    private static Object readValue(ValueType valueType, BinaryInput in) throws IOException {
+        switch (valueType.kind) {
+            case STRING:
+                return in.readString();
+            case BYTES:
+                return in.readBytes();
+            case ENUM: {
+                int ordinal = in.readVarInt() - 1;
+                if (ordinal < -1 || ordinal >= valueType.constants.length)
+                    throw new StreamCorruptedException("Invalid ordinal of " + valueType.raw.getName() + ": "
+                            + ordinal);
+                return ordinal < 0 ? null : valueType.constants[ordinal];
+            }
+            case LIST: {
+                // Every element takes at least a byte, readLength bounds the size with the bytes left
+                int size = in.readLength();
+                if (size < 0) {
+                    return null;
+                }
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(valueType.element, in));
+                }
+                return list;
+            }
+            default: {
+                byte present = in.readByte();
+                if (present == 0) {
+                    return null;
+                }
+                if (present != 1)
+                    throw new StreamCorruptedException("Invalid presence byte: " + present);
+                return valueType.kind == Kind.OBJECT ? of(valueType.raw).read(in) : readPrimitive(valueType.kind, in);
+            }
+        }
+    }
+
+    private static Property[] recordProperties(Class<?> type) throws ReflectiveOperationException {
+        RecordComponent[] components = type.getRecordComponents();
+        Property[] properties = new Property[components.length];
+        for (int i = 0; i < components.length; i++) {
+            RecordComponent component = components[i];
+            ValueType valueType = ValueType.of(component.getGenericType(), type, component.getName());
+            component.getAccessor().setAccessible(true);
+            MethodHandle getter = MethodHandles.lookup().unreflect(component.getAccessor());
+            properties[i] = new Property(component.getName(), valueType, typedGetter(getter, valueType), null);
+        }
+        return properties;
+    }
+
+    private static Property[] fieldProperties(Class<?> type) throws ReflectiveOperationException {
+        // The fields of the superclasses first
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+            if (current.getName().startsWith("java."))
+                throw new UnsupportedTypeException("extends a JDK class: " + type.getName());
+            hierarchy.add(0, current);
+        }
+
+        List<Property> properties = new ArrayList<>();
+        for (Class<?> current : hierarchy) {
+            Field[] fields = current.getDeclaredFields();
+            // The order of getDeclaredFields is not specified, the order of the properties must not vary
+            Arrays.sort(fields, Comparator.comparing(Field::getName));
+            for (Field field : fields) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                ValueType valueType = ValueType.of(field.getGenericType(), type, field.getName());
+                field.setAccessible(true);
+                MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+                // Final fields too, once accessible
+                MethodHandle setter = MethodHandles.lookup().unreflectSetter(field)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                properties.add(new Property(current.getSimpleName() + "." + field.getName(), valueType,
+                        typedGetter(getter, valueType), setter));
+            }
+        }
+        return properties.toArray(new Property[0]);
+    }
+
+    /**
+     * Adapts a getter to (Object) -> primitive for a primitive property, (Object) -> Object otherwise, the types
+     * {@link #write} invokes it with.
+     */
+    private static MethodHandle typedGetter(MethodHandle getter, ValueType valueType) {
+        Class<?> returnType = valueType.primitive ? valueType.raw : Object.class;
+        return getter.asType(MethodType.methodType(returnType, Object.class));
+    }
+
+    /**
+     * A property of a class and how to read and write its value.
+     */
+    private record Property(String name, ValueType type, MethodHandle getter, MethodHandle setter) {
+    }
+
+    /**
+     * The encoding of a value: its kind, whether it is a primitive (never null, no presence byte), and the element
+     * type of a List.
+     */
+    private static final class ValueType {
+
+        private final Kind kind;
+        private final Class<?> raw;
+        private final boolean primitive;
+        private final ValueType element;
+        private final Object[] constants;
+
+        private ValueType(Kind kind, Class<?> raw, boolean primitive, ValueType element) {
+            this.kind = kind;
+            this.raw = raw;
+            this.primitive = primitive;
+            this.element = element;
+            this.constants = kind == Kind.ENUM ? raw.getEnumConstants() : null;
+        }
+
+        static ValueType of(Type type, Class<?> owner, String name) {
+            if (type instanceof ParameterizedType parameterized && parameterized.getRawType() == List.class) {
+                ValueType element = of(parameterized.getActualTypeArguments()[0], owner, name);
+                return new ValueType(Kind.LIST, List.class, false, element);
+            }
+            if (!(type instanceof Class<?> raw))
+                throw new UnsupportedTypeException("unsupported type " + type + " of " + owner.getName() + "." + name);
+
+            Kind primitiveKind = primitiveKind(raw);
+            if (primitiveKind != null) {
+                return new ValueType(primitiveKind, raw, raw.isPrimitive(), null);
+            }
+            if (raw == String.class) {
+                return new ValueType(Kind.STRING, raw, false, null);
+            }
+            if (raw == byte[].class) {
+                return new ValueType(Kind.BYTES, raw, false, null);
+            }
+            if (raw.isEnum()) {
+                return new ValueType(Kind.ENUM, raw, false, null);
+            }
+            if (raw.isArray() || raw.isInterface() || raw.getName().startsWith("java."))
+                throw new UnsupportedTypeException("unsupported type " + raw.getName() + " of " + owner.getName()
+                        + "." + name);
+            // Checked once the schema of the owner exists, it may be the owner itself, which is then recursive
+            return new ValueType(Kind.OBJECT, raw, false, null);
+        }
+
+        private static Kind primitiveKind(Class<?> raw) {
+            if (raw == boolean.class || raw == Boolean.class) return Kind.BOOLEAN;
+            if (raw == byte.class || raw == Byte.class) return Kind.BYTE;
+            if (raw == short.class || raw == Short.class) return Kind.SHORT;
+            if (raw == char.class || raw == Character.class) return Kind.CHAR;
+            if (raw == int.class || raw == Integer.class) return Kind.INT;
+            if (raw == long.class || raw == Long.class) return Kind.LONG;
+            if (raw == float.class || raw == Float.class) return Kind.FLOAT;
+            if (raw == double.class || raw == Double.class) return Kind.DOUBLE;
+            return null;
+        }
+    }
+
+    private static final class UnsupportedTypeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedTypeException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Processes many files concurrently, one virtual thread per file, e.g. with {@link FileReaderInputStream}.
+ * <p>
+ * A virtual thread blocked on a read costs a few hundred bytes of heap instead of the stack of a platform thread,
+ * so every file gets its own thread and no pool has to be sized. The number of files processed at a time, i.e. of
+ * open files and read buffers, is bounded by a semaphore instead: the other threads wait for a permit, parked.
+ * <p>
+ * A failing file does not stop the others, its error is part of its result.
+ */
+public class BulkFileProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkFileProcessor.class);
+
+    /**
+     * Processes one file, on its own virtual thread.
+     */
+    @FunctionalInterface
+    public interface FileTask<R> {
+        R process(Path path) throws IOException;
+    }
+
+    /**
+     * The outcome of one file: the result of its task, or the error it threw, and how long the task ran, not
+     * counting the wait for a permit.
+     */
+    public record FileResult<R>(Path path, R result, Throwable error, Duration duration) {
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * The outcomes of every file, in the order of the paths, and the time taken to process them all.
+     */
+    public record BulkResult<R>(List<FileResult<R>> results, Duration elapsed) {
+
+        public List<FileResult<R>> succeeded() {
+            return results.stream().filter(FileResult::isSuccess).toList();
+        }
+
+        public List<FileResult<R>> failed() {
+            return results.stream().filter(result -> !result.isSuccess()).toList();
+        }
+    }
+
+    private final int concurrency;
+
+    /**
+     * @param concurrency The maximal number of files processed at a time.
+     */
+    public BulkFileProcessor(int concurrency) {
+        if (concurrency <= 0)
+            throw new IllegalArgumentException("Concurrency must be a positive value");
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Processes the regular files of the directory and of its subdirectories.
+     *
+     * @throws IOException If the directory cannot be walked.
+     */
+    public <R> BulkResult<R> process(Path directory, FileTask<R> task) throws IOException, InterruptedException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.walk(directory)) {
+            paths = files.filter(Files::isRegularFile).toList();
+        }
+        return process(paths, task);
+    }
+
+    /**
+     * Processes the files, each one on its own virtual thread, and waits for all of them.
+     */
+    public <R> BulkResult<R> process(Collection<Path> paths, FileTask<R> task) throws InterruptedException {
+        Semaphore permits = new Semaphore(concurrency);
+        long start = System.nanoTime();
+
+        List<Future<FileResult<R>>> futures = new ArrayList<>(paths.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path path : paths) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return run(path, task);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        } // close() waits for every task
+
+        List<FileResult<R>> results = new ArrayList<>(futures.size());
+        for (Future<FileResult<R>> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                // run() catches every exception, only the wait for a permit can fail
+                throw (InterruptedException) new InterruptedException("Interrupted while waiting for a permit")
+                        .initCause(e.getCause());
+            }
+        }
+        return new BulkResult<>(results, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static <R> FileResult<R> run(Path path, FileTask<R> task) {
+        long start = System.nanoTime();
+        try {
+            R result = task.process(path);
+            return new FileResult<>(path, result, null, Duration.ofNanos(System.nanoTime() - start));
+        } catch (Exception e) {
+            logger.info("Exception during processing: {} on input data: {}", e.getMessage(), path);
+            return new FileResult<>(path, null, e, Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+}
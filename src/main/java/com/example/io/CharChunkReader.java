@@ -0,0 +1,98 @@
+package com.example.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads a FileChannel as chunks of decoded chars, for {@link FileReaderCharacterStream}.
+ * <p>
+ * The bytes are read into a direct buffer. UTF-8 and US-ASCII are decoded by {@link Utf8Decoder}, other charsets by a
+ * CharsetDecoder. Every chunk is decoded into the same char array and returned as the same view of it.
+ */
+final class CharChunkReader implements ChunkReader<CharSequence> {
+
+    /**
+     * The longest UTF-8 sequence, the buffer always has room for it, or it could never be completed.
+     */
+    static final int MAX_SEQUENCE_LENGTH = 4;
+
+    private final FileChannel fileChannel;
+    private final Utf8Decoder utf8Decoder;
+    private final CharsetDecoder decoder;
+    private final char[] chars;
+    private final ByteBuffer bytes;
+    private final CharBuffer out;
+    private boolean endOfInput;
+    private boolean finished;
+
+    /**
+     * @param chars The array the chunks are decoded into, it sets their maximal length.
+     */
+    CharChunkReader(FileChannel fileChannel, Charset charset, char[] chars) {
+        this.fileChannel = fileChannel;
+        this.utf8Decoder = Utf8Decoder.forCharset(charset);
+        this.decoder = utf8Decoder != null ? null : charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        // No more bytes than chars, so a UTF-8 or ASCII chunk always fits in the array
+        this.chars = chars.length >= MAX_SEQUENCE_LENGTH ? chars : new char[MAX_SEQUENCE_LENGTH];
+        this.bytes = ByteBuffer.allocateDirect(this.chars.length).flip();
+        this.out = CharBuffer.wrap(this.chars);
+    }
+
+    @Override
+    public CharSequence read() throws IOException {
+        out.clear();
+        while (!finished) {
+            if (utf8Decoder != null) {
+                fill();
+                int length = utf8Decoder.decode(bytes, chars, 0, endOfInput);
+                finished = endOfInput;
+                if (length > 0) {
+                    out.limit(length);
+                    return out;
+                }
+                continue;
+            }
+
+            CoderResult result = decoder.decode(bytes, out, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                return out.flip();
+            }
+            if (endOfInput) {
+                decoder.flush(out);
+                finished = true;
+                break;
+            }
+            // The chunk is not full yet, decode more bytes into it
+            fill();
+        }
+
+        out.flip();
+        return out.hasRemaining() ? out : null;
+    }
+
+    /**
+     * Reads more bytes after the ones not decoded yet, a sequence cut by the end of the previous read.
+     */
+    private void fill() throws IOException {
+        bytes.compact();
+        endOfInput = fileChannel.read(bytes) == -1;
+        bytes.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+}
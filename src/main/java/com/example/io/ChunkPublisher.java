@@ -0,0 +1,162 @@
+package com.example.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the chunks of a blocking {@link ChunkReader}, read only as far as the subscriber requested them.
+ * <p>
+ * Every subscription opens its own reader, on its first request. The reads run on the given executor: a task is
+ * started when chunks are requested and ends once they are delivered, so no thread is held while the subscriber does not request anything.
+ * Signals are serialized with a work counter, whoever increments it from 0 starts the task, the others only make the
+ * running task loop once more.
+ * <p>
+ * Chunks may be reused by the reader: a chunk is only valid until onNext returns, the next read starts afterwards.
+ * Cancelling the subscription closes the reader, which interrupts a read in progress on a FileChannel.
+ */
+final class ChunkPublisher<T> implements Flow.Publisher<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkPublisher.class);
+
+    private final Callable<? extends ChunkReader<T>> opener;
+    private final Executor executor;
+    private final Object source;
+
+    /**
+     * @param opener   Opens the reader of a subscription, called on the executor.
+     * @param executor Runs the reads and the signals to the subscriber.
+     * @param source   The object read, for the logs.
+     */
+    ChunkPublisher(Callable<? extends ChunkReader<T>> opener, Executor executor, Object source) {
+        this.opener = Objects.requireNonNull(opener, "Opener cannot be null");
+        this.executor = Objects.requireNonNull(executor, "Executor cannot be null");
+        this.source = source;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "Subscriber cannot be null");
+        PullSubscription subscription = new PullSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class PullSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private volatile ChunkReader<T> reader;
+
+        // Only touched by the running task
+        private long emitted;
+        private boolean done;
+
+        PullSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested chunks must be positive: " + n);
+            } else {
+                requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            // Closed from the cancelling thread, a blocked read fails at once instead of finishing first
+            close();
+        }
+
+        void schedule() {
+            if (work.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                cancelled = true;
+                close();
+                subscriber.onError(e);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    emit();
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            try {
+                if (reader == null && !cancelled) {
+                    reader = opener.call();
+                }
+
+                while (!cancelled) {
+                    if (invalidRequest != null) {
+                        terminate();
+                        subscriber.onError(invalidRequest);
+                        return;
+                    }
+                    // Nothing is read before it is requested
+                    if (emitted >= requested.get()) {
+                        return;
+                    }
+
+                    T chunk = reader.read();
+                    if (chunk == null) {
+                        terminate();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    emitted++;
+                    subscriber.onNext(chunk);
+                }
+                terminate();
+
+            } catch (Exception e) {
+                terminate();
+                if (!cancelled) {
+                    logger.info("Exception during read: {} on input data: {}", e.getMessage(), source);
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        private void terminate() {
+            done = true;
+            close();
+        }
+
+        private void close() {
+            ChunkReader<T> reader = this.reader;
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    logger.info("Exception during close: {} on input data: {}", e.getMessage(), source);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of chunks read one at a time, on demand, by {@link ChunkPublisher}.
+ */
+interface ChunkReader<T> extends Closeable {
+
+    /**
+     * Reads the next chunk, blocking if needed. The chunk may be reused by the next call.
+     *
+     * @return The chunk, or null at the end of the source.
+     */
+    T read() throws IOException;
+}
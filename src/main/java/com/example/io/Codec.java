@@ -0,0 +1,49 @@
+package com.example.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Turns objects into bytes and back, the serialization mechanism used by {@link Serialize}.
+ * <p>
+ * Implementations are stateless from the caller's point of view and can be shared between threads:
+ * {@link JdkCodec} uses Java's built-in serialization, {@link BinaryCodec} a compact schema-based format.
+ * <p>
+ * Many objects are written to one stream with {@link #newWriter} and read back lazily with {@link #newReader}. By
+ * default every object is a frame holding its {@link #encode} bytes, codecs override them to write their per-stream
+ * overhead only once.
+ */
+public interface Codec {
+
+    /**
+     * Encodes the object into a new byte array.
+     */
+    byte[] encode(Object object) throws IOException;
+
+    /**
+     * Decodes an object of the given type from bytes produced by {@link #encode}.
+     *
+     * @throws ClassCastException If the decoded object is not an instance of the type.
+     */
+    <T> T decode(byte[] bytes, Class<T> type) throws IOException, ClassNotFoundException;
+
+    /**
+     * Returns a writer of objects of the given type to the stream, buffered. The writer closes the stream.
+     */
+    default <T> ObjectWriter<T> newWriter(OutputStream outputStream, Class<T> type) throws IOException {
+        return new FramedObjectWriter<>(outputStream, null, (object, frame) -> {
+            byte[] bytes = encode(object);
+            frame.write(bytes, 0, bytes.length);
+        });
+    }
+
+    /**
+     * Returns a reader of the objects written to the stream by {@link #newWriter} for the same type. The reader closes
+     * the stream.
+     */
+    default <T> ObjectReader<T> newReader(InputStream inputStream, Class<T> type) throws IOException {
+        return new FramedObjectReader<>(inputStream, (bytes, length) -> decode(Arrays.copyOf(bytes, length), type));
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Concatenates segments of files, whole files or byte ranges, into one read-only channel, the channel counterpart of
+ * {@link CompositeSequenceInputStream}.
+ * <p>
+ * The size of every segment is known when it is added, so the channel has a size and can be read from any offset:
+ * an offset is found in its segment with a binary search over the segment start offsets, and read with a positional
+ * read of the segment's FileChannel. Segments can be added while the channel is read, the reads see the segments
+ * added before they started.
+ * <p>
+ * The segments are written to a target without passing through the heap, in one of two ways:
+ * <ul>
+ * <li>{@link #transferTo(long, long, WritableByteChannel)} calls FileChannel.transferTo per segment, which the OS
+ * performs without copying the bytes to user space (sendfile to a socket, copy_file_range to a file).</li>
+ * <li>{@link #writeTo(long, long, GatheringByteChannel)} maps the segments and writes all of them with gathering
+ * writes, a single system call for many small segments, e.g. headers and bodies.</li>
+ * </ul>
+ * Usage Example:
+ * ```java
+ * try (CompositeFileChannel channel = new CompositeFileChannel()
+ * .addFile(header)
+ * .addRange(data, 1024, 4096)
+ * .addFile(footer)) {
+ * channel.transferTo(0, channel.size(), socketChannel);
+ * }
+ * ```
+ */
+public class CompositeFileChannel implements SeekableByteChannel, ScatteringByteChannel {
+
+    /**
+     * The largest part of a segment mapped at once, a MappedByteBuffer is indexed by an int.
+     */
+    static final long WINDOW_SIZE = 1024 * 1024 * 1024;
+
+    // Replaced by a longer copy on every add, so reads use a consistent snapshot without locking
+    private volatile Segment[] segments = new Segment[0];
+    private long position;
+    private volatile boolean closed;
+
+    /**
+     * Adds the whole file, opened now and closed with the channel.
+     */
+    public CompositeFileChannel addFile(Path path) throws IOException {
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        return add(fileChannel, 0, fileChannel.size(), true);
+    }
+
+    /**
+     * Adds {@code count} bytes of the file from {@code position}, opened now and closed with the channel.
+     */
+    public CompositeFileChannel addRange(Path path, long position, long count) throws IOException {
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return add(fileChannel, position, count, true);
+        } catch (IllegalArgumentException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds {@code count} bytes of the channel from {@code position}. The channel is not closed with this one, and
+     * its position is never used: it can be shared with other readers.
+     */
+    public CompositeFileChannel addRange(FileChannel fileChannel, long position, long count) throws IOException {
+        return add(Objects.requireNonNull(fileChannel, "File channel cannot be null"), position, count, false);
+    }
+
+    private CompositeFileChannel add(FileChannel fileChannel, long position, long count, boolean owned)
+            throws IOException {
+        if (closed) {
+            if (owned) {
+                fileChannel.close();
+            }
+            throw new ClosedChannelException();
+        }
+        // Not position + count, which overflows for a count such as Long.MAX_VALUE
+        long size = fileChannel.size();
+        if (position < 0 || count < 0 || position > size || count > size - position)
+            throw new IllegalArgumentException("Range must be within the file: position " + position + ", count "
+                    + count + ", size " + size);
+
+        synchronized (this) {
+            Segment[] segments = Arrays.copyOf(this.segments, this.segments.length + 1);
+            segments[segments.length - 1] = new Segment(fileChannel, position, count, size(this.segments), owned);
+            this.segments = segments;
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        int bytesRead = read(dst, position);
+        if (bytesRead > 0) {
+            position += bytesRead;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Reads into the buffers in turn, from the current position.
+     */
+    @Override
+    public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, dsts.length);
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (!dsts[i].hasRemaining()) {
+                continue;
+            }
+            int bytesRead = read(dsts[i]);
+            if (bytesRead < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += bytesRead;
+            if (dsts[i].hasRemaining()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    /**
+     * Reads from the given offset, across segments, without changing the position of the channel.
+     *
+     * @return The number of bytes read, or -1 if the offset is at or past the end of the channel.
+     */
+    public int read(ByteBuffer dst, long offset) throws IOException {
+        ensureOpen();
+        if (offset < 0)
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+
+        Segment[] segments = this.segments;
+        long size = size(segments);
+        if (offset >= size) {
+            return -1;
+        }
+
+        int total = 0;
+        int index = segmentIndex(segments, offset);
+        while (dst.hasRemaining() && offset < size) {
+            Segment segment = segments[index];
+            long segmentOffset = offset - segment.start;
+            long segmentRemaining = segment.count - segmentOffset;
+            if (segmentRemaining == 0) {
+                // An empty segment
+                index++;
+                continue;
+            }
+
+            // Never read past the end of the segment, into the rest of its file
+            int limit = dst.limit();
+            if (dst.remaining() > segmentRemaining) {
+                dst.limit(dst.position() + (int) segmentRemaining);
+            }
+            int bytesRead;
+            try {
+                bytesRead = segment.fileChannel.read(dst, segment.position + segmentOffset);
+            } finally {
+                dst.limit(limit);
+            }
+            if (bytesRead <= 0) {
+                // The file was truncated since it was added
+                if (bytesRead < 0 && total == 0)
+                    throw new IOException("Segment " + index + " ends before its range: " + segment);
+                break;
+            }
+
+            total += bytesRead;
+            offset += bytesRead;
+            if (bytesRead == segmentRemaining) {
+                index++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Transfers {@code count} bytes from the given offset to the target, with FileChannel.transferTo for every
+     * segment. The position of the channel is not changed.
+     * <p>
+     * Stops early when the target accepts fewer bytes than offered, e.g. a non-blocking socket whose send buffer is
+     * full: the rest is transferred by the next call, from the offset plus the bytes returned.
+     *
+     * @return The number of bytes transferred.
+     */
+    public long transferTo(long offset, long count, WritableByteChannel target) throws IOException {
+        ensureOpen();
+        Objects.requireNonNull(target, "Target cannot be null");
+        Segment[] segments = this.segments;
+        long end = Math.min(size(segments), checkedEnd(offset, count));
+
+        long total = 0;
+        int index = offset < end ? segmentIndex(segments, offset) : segments.length;
+        while (offset < end) {
+            Segment segment = segments[index];
+            long segmentOffset = offset - segment.start;
+            long requested = Math.min(segment.count - segmentOffset, end - offset);
+
+            long transferred = segment.fileChannel.transferTo(segment.position + segmentOffset, requested, target);
+            total += transferred;
+            offset += transferred;
+            if (transferred < requested) {
+                break;
+            }
+            index++;
+        }
+        return total;
+    }
+
+    /**
+     * Transfers every byte from the current position to the target and moves the position past them, see
+     * {@link #transferTo(long, long, WritableByteChannel)}.
+     */
+    public synchronized long transferTo(WritableByteChannel target) throws IOException {
+        long transferred = transferTo(position, Long.MAX_VALUE - position, target);
+        position += transferred;
+        return transferred;
+    }
+
+    /**
+     * Writes {@code count} bytes from the given offset to the target with gathering writes of the mapped segments.
+     * The position of the channel is not changed.
+     * <p>
+     * Every segment is mapped and passed to the target as one of the buffers of the same write, so segments of a few
+     * bytes cost no system call of their own. Writing stops early when the target accepts nothing, e.g. a
+     * non-blocking socket whose send buffer is full.
+     *
+     * @return The number of bytes written.
+     */
+    public long writeTo(long offset, long count, GatheringByteChannel target) throws IOException {
+        Objects.requireNonNull(target, "Target cannot be null");
+        ByteBuffer[] buffers = map(offset, count);
+
+        long total = 0;
+        int first = 0;
+        while (first < buffers.length) {
+            long written = target.write(buffers, first, buffers.length - first);
+            if (written == 0) {
+                break;
+            }
+            total += written;
+            while (first < buffers.length && !buffers[first].hasRemaining()) {
+                first++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns read-only mappings of {@code count} bytes from the given offset, one per segment and per window of
+     * {@link #WINDOW_SIZE} bytes within a segment, in order.
+     */
+    public ByteBuffer[] map(long offset, long count) throws IOException {
+        ensureOpen();
+        Segment[] segments = this.segments;
+        long end = Math.min(size(segments), checkedEnd(offset, count));
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        int index = offset < end ? segmentIndex(segments, offset) : segments.length;
+        while (offset < end) {
+            Segment segment = segments[index];
+            long segmentOffset = offset - segment.start;
+            long length = Math.min(WINDOW_SIZE, Math.min(segment.count - segmentOffset, end - offset));
+
+            MappedByteBuffer window = segment.fileChannel.map(FileChannel.MapMode.READ_ONLY,
+                    segment.position + segmentOffset, length);
+            buffers.add(window);
+            offset += length;
+            if (segmentOffset + length == segment.count) {
+                index++;
+            }
+        }
+        return buffers.toArray(new ByteBuffer[0]);
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    /**
+     * Moves the position, past the end of the channel is allowed: reads return -1 from there.
+     */
+    @Override
+    public synchronized CompositeFileChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0)
+            throw new IllegalArgumentException("Position must not be negative: " + newPosition);
+        position = newPosition;
+        return this;
+    }
+
+    /**
+     * Returns the sum of the sizes of the segments.
+     */
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size(segments);
+    }
+
+    /**
+     * Returns the number of segments.
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Closes the files added by path, the channels added as FileChannels are left open.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        IOException closeFailure = null;
+        for (Segment segment : segments) {
+            if (!segment.owned) {
+                continue;
+            }
+            try {
+                segment.fileChannel.close();
+            } catch (IOException e) {
+                if (closeFailure == null) {
+                    closeFailure = e;
+                } else {
+                    closeFailure.addSuppressed(e);
+                }
+            }
+        }
+        if (closeFailure != null) {
+            throw closeFailure;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeFileChannel{segments=" + segments.length + ", size=" + size(segments) + "}";
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (closed)
+            throw new ClosedChannelException();
+    }
+
+    private static long checkedEnd(long offset, long count) {
+        if (offset < 0 || count < 0)
+            throw new IllegalArgumentException("Offset and count must not be negative: " + offset + ", " + count);
+        // Saturates instead of overflowing, e.g. for a count of Long.MAX_VALUE
+        long end = offset + count;
+        return end < 0 ? Long.MAX_VALUE : end;
+    }
+
+    private static long size(Segment[] segments) {
+        return segments.length == 0 ? 0 : segments[segments.length - 1].end();
+    }
+
+    /**
+     * Returns the index of the segment holding the offset, which must be before the end of the channel: the last
+     * segment starting at or before the offset, so empty segments, which share their start with the next one, are
+     * skipped.
+     */
+    private static int segmentIndex(Segment[] segments, long offset) {
+        int low = 0;
+        int high = segments.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments[middle].start <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * {@code count} bytes of the file from {@code position}, at {@code start} in the channel.
+     */
+    private record Segment(FileChannel fileChannel, long position, long count, long start, boolean owned) {
+
+        long end() {
+            return start + count;
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package com.example.io;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The CompositeSequenceInputStream class provides a convenient way to create a composite
@@ -25,22 +34,262 @@ import java.util.List;
  * SequenceInputStream resultStream = compositeStream.getCompositeSequenceInputStream();
  * // Use resultStream as needed...
  * ```
+ * <p>
+ * Sources can also be added unopened, with {@link #addSource}, to be opened once they are read. A SequenceInputStream
+ * reads each source after the previous one, {@link #getPrefetchingInputStream} reads the next ones ahead, concurrently.
  */
 public class CompositeSequenceInputStream {
 
-    private List<InputStream> inputStreams;
+    private final List<Callable<? extends InputStream>> sources;
 
     public CompositeSequenceInputStream() {
-        this.inputStreams = new ArrayList<>();
+        this.sources = new ArrayList<>();
     }
 
     public CompositeSequenceInputStream addInputStream(InputStream inputStream) {
-        inputStreams.add(inputStream);
+        sources.add(new OpenedSource(Objects.requireNonNull(inputStream, "Input stream cannot be null")));
         return this;
     }
 
+    /**
+     * Adds a source opened only when it is read, e.g. {@code () -> Files.newInputStream(part)}, so that a long
+     * sequence does not hold every source open at once.
+     */
+    public CompositeSequenceInputStream addSource(Callable<? extends InputStream> opener) {
+        sources.add(Objects.requireNonNull(opener, "Opener cannot be null"));
+        return this;
+    }
+
+    /**
+     * Returns a SequenceInputStream of the sources, opening each one only once the previous one is exhausted: this
+     * method opens none of them. A source that cannot be opened makes the read reaching it throw an IOException.
+     * <p>
+     * Closing the stream closes the source being read and the ones added already open, the sources not opened yet
+     * never are.
+     */
     public SequenceInputStream getCompositeSequenceInputStream() {
-        Enumeration<InputStream> enumeration = Collections.enumeration(inputStreams);
-        return new SequenceInputStream(enumeration);
+        return new LazySequenceInputStream(List.copyOf(sources));
+    }
+
+    /**
+     * Returns a stream of the sources that reads up to {@code prefetch} of them at a time on virtual threads, see
+     * {@link PrefetchingSequenceInputStream}. The stream must be closed.
+     *
+     * @param prefetch   The maximal number of sources read at a time, the current one included.
+     * @param bufferSize The maximal number of bytes read ahead per source.
+     */
+    public PrefetchingSequenceInputStream getPrefetchingInputStream(int prefetch, int bufferSize) {
+        ThreadFactory threadFactory = Thread.ofVirtual().name("prefetch-", 0).factory();
+        return getPrefetchingInputStream(prefetch, bufferSize, command -> threadFactory.newThread(command).start());
+    }
+
+    /**
+     * Returns a stream of the sources that reads up to {@code prefetch} of them at a time on the executor, see
+     * {@link PrefetchingSequenceInputStream}. The stream must be closed.
+     *
+     * @param executor Runs the reads of the sources, one task per source, blocked while its buffer is full.
+     */
+    public PrefetchingSequenceInputStream getPrefetchingInputStream(int prefetch, int bufferSize, Executor executor) {
+        return new PrefetchingSequenceInputStream(sources, prefetch, bufferSize, executor);
+    }
+
+    /**
+     * Returns a Publisher of the concatenated streams, in chunks of at most {@code length} bytes read as far as the
+     * subscriber requested them.
+     * <p>
+     * The streams are read on the executor, only while chunks are requested, into a byte array reused by every chunk:
+     * each chunk is a read-only ByteBuffer view of it, only valid until onNext returns. Cancelling the subscription
+     * closes the streams. The streams can only be read once, so the Publisher accepts a single subscriber: the later
+     * ones are signalled an IllegalStateException right after onSubscribe.
+     *
+     * @param length   The maximal length of a chunk.
+     * @param executor Runs the blocking reads and the signals to the subscriber.
+     */
+    public Flow.Publisher<ByteBuffer> publisher(int length, Executor executor) {
+        if (length <= 0)
+            throw new IllegalArgumentException("Length must be a positive value");
+
+        SequenceInputStream sequenceInputStream = getCompositeSequenceInputStream();
+        AtomicBoolean subscribed = new AtomicBoolean();
+        Flow.Publisher<ByteBuffer> chunkPublisher = new ChunkPublisher<>(() -> {
+            byte[] bytes = new byte[length];
+            ByteBuffer view = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+
+            return new ChunkReader<ByteBuffer>() {
+                @Override
+                public ByteBuffer read() throws IOException {
+                    int bytesRead;
+                    do {
+                        bytesRead = sequenceInputStream.read(bytes);
+                    } while (bytesRead == 0);
+                    if (bytesRead == -1) {
+                        return null;
+                    }
+                    view.limit(bytesRead);
+                    view.position(0);
+                    return view;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    sequenceInputStream.close();
+                }
+            };
+        }, executor, this);
+
+        return subscriber -> {
+            Objects.requireNonNull(subscriber, "Subscriber cannot be null");
+            if (subscribed.compareAndSet(false, true)) {
+                chunkPublisher.subscribe(subscriber);
+                return;
+            }
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The streams are already read by another subscriber"));
+        };
+    }
+
+    private static InputStream open(Callable<? extends InputStream> opener) throws IOException {
+        try {
+            return opener.call();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Source could not be opened", e);
+        }
+    }
+
+    /**
+     * A SequenceInputStream opening its sources as they are reached. SequenceInputStream itself opens the first
+     * source as soon as it is created, and every remaining one when it is closed, only to close it.
+     */
+    private static final class LazySequenceInputStream extends SequenceInputStream {
+
+        private final List<Callable<? extends InputStream>> sources;
+
+        // The source being read, null before it is opened
+        private int index;
+        private InputStream current;
+        private boolean closed;
+
+        LazySequenceInputStream(List<Callable<? extends InputStream>> sources) {
+            super(Collections.emptyEnumeration());
+            this.sources = sources;
+        }
+
+        @Override
+        public int read() throws IOException {
+            for (InputStream in = current(); in != null; in = next()) {
+                int b = in.read();
+                if (b != -1) {
+                    return b;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            for (InputStream in = current(); in != null; in = next()) {
+                int bytesRead = in.read(b, off, len);
+                if (bytesRead > 0) {
+                    return bytesRead;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * The bytes available from the source being read, without opening the next one.
+         */
+        @Override
+        public int available() throws IOException {
+            return current == null ? 0 : current.available();
+        }
+
+        @Override
+        public long transferTo(OutputStream out) throws IOException {
+            Objects.requireNonNull(out, "Output stream cannot be null");
+            long transferred = 0;
+            for (InputStream in = current(); in != null; in = next()) {
+                transferred += in.transferTo(out);
+            }
+            return transferred;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            IOException closeFailure = null;
+            for (int i = index; i < sources.size(); i++) {
+                try {
+                    if (i == index && current != null) {
+                        current.close();
+                    } else if (sources.get(i) instanceof Closeable closeable) {
+                        closeable.close();
+                    }
+                } catch (IOException e) {
+                    if (closeFailure == null) {
+                        closeFailure = e;
+                    } else {
+                        closeFailure.addSuppressed(e);
+                    }
+                }
+            }
+            current = null;
+            index = sources.size();
+            if (closeFailure != null) {
+                throw closeFailure;
+            }
+        }
+
+        private InputStream current() throws IOException {
+            if (current == null && index < sources.size()) {
+                current = open(sources.get(index));
+            }
+            return current;
+        }
+
+        /**
+         * Closes the exhausted source and opens the next one.
+         */
+        private InputStream next() throws IOException {
+            InputStream exhausted = current;
+            current = null;
+            index++;
+            exhausted.close();
+            return current();
+        }
+    }
+
+    /**
+     * A source added already open, closed by the streams of the sources even if they never get to read it.
+     */
+    private record OpenedSource(InputStream inputStream) implements Callable<InputStream>, Closeable {
+
+        @Override
+        public InputStream call() {
+            return inputStream;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
     }
 }
@@ -0,0 +1,290 @@
+package com.example.io;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * A DataOutput writing through a FileChannel: the values are encoded into one reused direct buffer, written to the
+ * channel when it is full or flushed, so writing a primitive is a put into the buffer instead of a system call, and
+ * writing the buffer needs no copy to native memory.
+ * <p>
+ * The bytes are those of a DataOutputStream: a DataInputStream reads them back, writeUTF included. {@link #force()}
+ * makes them durable, which a DataOutputStream over a FileOutputStream cannot do.
+ * <p>
+ * Without a channel, the writer is a growable buffer: {@link GroupCommitLog} encodes the records of its batches with
+ * it, and writes the batches itself.
+ * <p>
+ * Usage Example:
+ * ```java
+ * try (DataRecordWriter writer = new DataRecordWriter(Path.of("data.bin"))) {
+ * writer.writeInt(1);
+ * writer.writeUTF("John Doe");
+ * writer.writeDouble(50000.0);
+ * writer.force();
+ * }
+ * ```
+ */
+public class DataRecordWriter implements DataOutput, Flushable, Closeable {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The longest string writeUTF accepts: its length is written as an unsigned short.
+     */
+    private static final int MAX_UTF_LENGTH = 0xFFFF;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    private long flushed;
+
+    /**
+     * Creates the file, or truncates it.
+     */
+    public DataRecordWriter(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE), BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel Written from its position, and closed by the writer.
+     */
+    public DataRecordWriter(FileChannel channel, int bufferSize) {
+        this.channel = Objects.requireNonNull(channel, "Channel cannot be null");
+        if (bufferSize < Long.BYTES)
+            throw new IllegalArgumentException("Buffer size must be at least " + Long.BYTES);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * A growable buffer, without a channel.
+     */
+    DataRecordWriter(int capacity) {
+        this.channel = null;
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureRemaining(Byte.BYTES);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (channel != null && len > buffer.capacity()) {
+            // Larger than the buffer: written directly instead of copied chunk by chunk
+            flush();
+            ByteBuffer source = ByteBuffer.wrap(b, off, len);
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            flushed += len;
+            return;
+        }
+        ensureRemaining(len);
+        buffer.put(b, off, len);
+    }
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        write(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        write(v);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        ensureRemaining(Short.BYTES);
+        buffer.putShort((short) v);
+    }
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        ensureRemaining(Character.BYTES);
+        buffer.putChar((char) v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    /**
+     * Writes the low byte of every char.
+     */
+    @Override
+    public void writeBytes(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            write(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            writeChar(s.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the length of the string in modified UTF-8 as an unsigned short, then the string in modified UTF-8: the
+     * UTF-8 of the string, except for the char 0 written on two bytes and supplementary characters written as their
+     * two surrogates. The string is encoded straight into the buffer, flushed as it fills when the string is larger.
+     */
+    @Override
+    public void writeUTF(String s) throws IOException {
+        int length = s.length();
+        int utfLength = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                utfLength += 2;
+            } else if (c >= 0x80 || c == 0) {
+                utfLength++;
+            }
+        }
+        if (utfLength > MAX_UTF_LENGTH)
+            throw new UTFDataFormatException("encoded string too long: " + utfLength + " bytes");
+
+        // Only with a small buffer: room is made for each char, at most 3 bytes, instead of the whole string
+        boolean fits = channel == null || Short.BYTES + utfLength <= buffer.capacity();
+        ensureRemaining(fits ? Short.BYTES + utfLength : Short.BYTES);
+        buffer.putShort((short) utfLength);
+        if (fits && utfLength == length) {
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) s.charAt(i));
+            }
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (!fits) {
+                ensureRemaining(3);
+            }
+            if (c < 0x80 && c != 0) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes written so far, flushed or not.
+     */
+    public long getSize() {
+        return flushed + buffer.position();
+    }
+
+    /**
+     * Writes the buffered bytes to the channel.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (channel == null)
+            return;
+        buffer.flip();
+        flushed += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered bytes to the channel and forces them to the storage device: once it returns, everything
+     * written survives a crash of the system.
+     */
+    public void force() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Flushes the buffered bytes, without forcing them, and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null)
+            return;
+        try (channel) {
+            flush();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DataRecordWriter{" +
+                "channel=" + channel +
+                ", size=" + getSize() +
+                '}';
+    }
+
+    /**
+     * Returns the buffer holding the bytes written, from 0 to its position, when the writer has no channel.
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Appends the remaining bytes of the source, when the writer has no channel.
+     */
+    void write(ByteBuffer source) throws IOException {
+        ensureRemaining(source.remaining());
+        buffer.put(source);
+    }
+
+    private void ensureRemaining(int count) throws IOException {
+        if (buffer.remaining() >= count)
+            return;
+        if (channel != null) {
+            flush();
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + count));
+        grown.put(buffer.flip());
+        buffer = grown;
+    }
+}
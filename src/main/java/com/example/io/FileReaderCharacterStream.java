@@ -7,13 +7,27 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class FileReaderCharacterStream {
 
     private static final Logger logger = LoggerFactory.getLogger(FileReaderCharacterStream.class);
 
+    /**
+     * Smallest byte range a parallel line stream is split into.
+     */
+    static final long MIN_SPLIT_SIZE = 1 << 20;
+
     private final char[] chars;
     private final String path;
 
@@ -78,4 +92,110 @@ public class FileReaderCharacterStream {
             throw e;
         }
     }
+
+    /**
+     * Reads the file in chunks of at most the configured length, decoded with the given charset, without the
+     * FileReader and BufferedReader layers and without allocating per chunk.
+     * <p>
+     * The bytes are read through a FileChannel into a direct buffer. UTF-8 and US-ASCII are decoded by a dedicated
+     * decoder that checks and widens ASCII bytes 8 at a time and only decodes the other bytes one sequence at a time,
+     * other charsets by a CharsetDecoder. The chars are decoded into the same array for every chunk and passed as a
+     * CharSequence view of it, only valid during the callback.
+     *
+     * @param charset  The charset of the file.
+     * @param consumer A consumer function that processes each chunk of characters.
+     * @throws IOException If an I/O error occurs during the read operation or the file is not valid in the charset.
+     */
+    public void performDirect(Charset charset, Consumer<CharSequence> consumer) throws IOException {
+        try (CharChunkReader reader = new CharChunkReader(
+                FileChannel.open(Paths.get(path), StandardOpenOption.READ), charset, chars)) {
+            CharSequence chunk;
+            while ((chunk = reader.read()) != null) {
+                consumer.accept(chunk);
+            }
+        } catch (IOException e) {
+            logger.info("Exception during read: {} on input data: {}", e.getMessage(), this);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a Publisher of the chunks of {@link #performDirect(Charset, Consumer)}, read as far as the subscriber
+     * requested them.
+     * <p>
+     * Every subscription opens the file and reads it on the executor, only while chunks are requested. Each chunk is
+     * a view of chars reused by the next one, only valid until onNext returns. Cancelling the subscription closes the
+     * file.
+     *
+     * @param charset  The charset of the file.
+     * @param executor Runs the blocking reads and the signals to the subscriber.
+     */
+    public Flow.Publisher<CharSequence> publisher(Charset charset, Executor executor) {
+        Objects.requireNonNull(charset, "Charset cannot be null");
+        // Each subscription decodes into its own chars
+        return new ChunkPublisher<>(() -> new CharChunkReader(
+                FileChannel.open(Paths.get(path), StandardOpenOption.READ), charset, new char[chars.length]),
+                executor, this);
+    }
+
+    /**
+     * Reads the file line by line, decoded with the given charset, and provides each line to the consumer.
+     * <p>
+     * The bytes are read through a FileChannel and decoded by blocks of whole lines with a reused CharsetDecoder into
+     * reused chars. Each line is passed as a CharSequence view of those chars, without its line terminator ("\n" or
+     * "\r\n") and without creating a String. The view is only valid during the callback, the next line reuses it:
+     * call toString() on the lines to keep.
+     *
+     * @param charset  The charset of the file, it must encode a line feed as a single byte (e.g. UTF-8, ISO-8859-1).
+     * @param consumer A consumer function that processes each line.
+     * @throws IOException If an I/O error occurs during the read operation or the file is not valid in the charset.
+     */
+    public void performLines(Charset charset, Consumer<CharSequence> consumer) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            new LineSpliterator(fileChannel, 0, fileChannel.size(), charset, true, MIN_SPLIT_SIZE)
+                    .forEachRemaining(consumer);
+        } catch (UncheckedIOException e) {
+            logger.info("Exception during read: {} on input data: {}", e.getMessage(), this);
+            throw e.getCause();
+        } catch (IOException e) {
+            logger.info("Exception during read: {} on input data: {}", e.getMessage(), this);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the lines of the file, decoded with the given charset, as a Stream that can be processed in parallel.
+     * <p>
+     * The Stream is backed by a Spliterator over the bytes of the file: in parallel it is split at line feeds, so
+     * every thread decodes whole lines of its own range of the file, read with positional reads on a shared
+     * FileChannel. Each block of lines is decoded into its own chars and the lines are CharSequence views of them,
+     * they stay valid after the callback without a String per line.
+     * <p>
+     * The Stream holds the open file, it must be closed, e.g. with try-with-resources. I/O errors are thrown as
+     * UncheckedIOException.
+     *
+     * @param charset The charset of the file, it must encode a line feed as a single byte (e.g. UTF-8, ISO-8859-1).
+     * @throws IOException If the file cannot be opened.
+     */
+    public Stream<CharSequence> lines(Charset charset) throws IOException {
+        return lines(charset, MIN_SPLIT_SIZE);
+    }
+
+    Stream<CharSequence> lines(Charset charset, long minSplitSize) throws IOException {
+        FileChannel fileChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            LineSpliterator spliterator = new LineSpliterator(fileChannel, 0, fileChannel.size(), charset, false,
+                    minSplitSize);
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    fileChannel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
 }
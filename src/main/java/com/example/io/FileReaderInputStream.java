@@ -7,16 +7,44 @@ import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class FileReaderInputStream {
 
     private static final Logger logger = LoggerFactory.getLogger(FileReaderInputStream.class);
 
+    /**
+     * Bytes mapped at a time by performParallel, files above it are mapped in successive windows.
+     * A mapping cannot exceed Integer.MAX_VALUE bytes.
+     */
+    static final long WINDOW_SIZE = 1L << 30;
+
+    /**
+     * Smallest range processed by a performParallel task, below it forking costs more than it saves.
+     */
+    static final int MIN_RANGE_SIZE = 1 << 20;
+
     private byte[] bytes;
     private String path;
 
+    // The reused chunk of performDirect and its read-only view, allocated on first use
+    private ByteBuffer directBuffer;
+    private ByteBuffer directView;
+
     public FileReaderInputStream(int length, String path) {
+        if (length <= 0)
+            throw new IllegalArgumentException("Length must be a positive value");
         this.bytes = new byte[length];
         this.path = path;
     }
@@ -77,4 +105,178 @@ public class FileReaderInputStream {
             throw e;
         }
     }
+
+    /**
+     * Reads the file in chunks without allocating anything per chunk.
+     * <p>
+     * A FileChannel reads each chunk into a direct buffer of the configured length, allocated once per instance and
+     * reused by every chunk and every call: the channel fills it without the intermediate copy a heap array needs,
+     * and no byte[] is created for the consumer.
+     * The consumer receives a read-only view of that buffer, positioned at 0 and limited to the bytes read.
+     * The view and its content are only valid during the callback, the next chunk overwrites them: a consumer that
+     * needs the bytes later must copy them. For the same reason an instance must not run two reads at a time.
+     *
+     * @param consumer The consumer callback to process each chunk of data.
+     * @throws IOException If an I/O error occurs during the reading process.
+     */
+    public void performDirect(Consumer<ByteBuffer> consumer) throws IOException {
+        if (directBuffer == null) {
+            directBuffer = ByteBuffer.allocateDirect(bytes.length);
+            directView = directBuffer.asReadOnlyBuffer();
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            int bytesRead;
+            while ((bytesRead = fileChannel.read(directBuffer)) != -1) {
+                // The view shares the content of the buffer, only its bounds are set
+                directView.limit(bytesRead);
+                directView.position(0);
+                consumer.accept(directView);
+
+                directBuffer.clear();
+            }
+        } catch (IOException e) {
+            logger.info("Exception during read: {} on input data: {}", e.getMessage(), this);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a Publisher of the chunks of {@link #performDirect(Consumer)}, read as far as the subscriber requested
+     * them.
+     * <p>
+     * Every subscription opens the file and reads it with a FileChannel on the executor, only while chunks are
+     * requested, into a direct buffer of its own. Each chunk is a read-only view of that buffer, reused by the next
+     * chunk, only valid until onNext returns. Cancelling the subscription closes the file.
+     *
+     * @param executor Runs the blocking reads and the signals to the subscriber.
+     */
+    public Flow.Publisher<ByteBuffer> publisher(Executor executor) {
+        return new ChunkPublisher<>(() -> {
+            FileChannel fileChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            ByteBuffer view = buffer.asReadOnlyBuffer();
+
+            return new ChunkReader<ByteBuffer>() {
+                @Override
+                public ByteBuffer read() throws IOException {
+                    buffer.clear();
+                    if (fileChannel.read(buffer) == -1) {
+                        return null;
+                    }
+                    view.limit(buffer.position());
+                    view.position(0);
+                    return view;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    fileChannel.close();
+                }
+            };
+        }, executor, this);
+    }
+
+    /**
+     * Processes the file in parallel ranges on the common ForkJoinPool, see
+     * {@link #performParallel(ForkJoinPool, Function, BinaryOperator)}.
+     */
+    public <R> R performParallel(Function<ByteBuffer, R> rangeConsumer, BinaryOperator<R> combiner) throws IOException {
+        return performParallel(ForkJoinPool.commonPool(), rangeConsumer, combiner);
+    }
+
+    /**
+     * Processes the file in parallel: the file is memory-mapped and split into ranges, each range is passed to the
+     * range consumer on a thread of the pool, and the results are merged by the combiner.
+     * <p>
+     * The file is mapped by windows of at most 1 GB, one after the other, so files larger than the 2 GB limit of a
+     * mapping are supported too. The ranges of a window are processed in parallel by a RecursiveTask splitting them in
+     * halves, about 4 ranges per thread of the pool and never less than 1 MB.
+     * <p>
+     * Each range is a read-only ByteBuffer positioned at 0, whose bytes are read straight from the page cache.
+     * The ranges split the file at arbitrary offsets: a line or record may span two of them.
+     * The combiner must be associative, it always receives the results of two adjacent ranges in file order.
+     *
+     * @param pool          The pool running the range consumer.
+     * @param rangeConsumer Processes one range and returns its result, called concurrently.
+     * @param combiner      Merges the results of two adjacent ranges, the left one first.
+     * @throws IOException If an I/O error occurs while mapping the file.
+     */
+    public <R> R performParallel(ForkJoinPool pool, Function<ByteBuffer, R> rangeConsumer,
+                                 BinaryOperator<R> combiner) throws IOException {
+        long rangeSize = Math.max(MIN_RANGE_SIZE, WINDOW_SIZE / (pool.getParallelism() * 4L));
+        return performParallel(pool, WINDOW_SIZE, rangeSize, rangeConsumer, combiner);
+    }
+
+    <R> R performParallel(ForkJoinPool pool, long windowSize, long rangeSize, Function<ByteBuffer, R> rangeConsumer,
+                          BinaryOperator<R> combiner) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            if (size == 0) {
+                return rangeConsumer.apply(ByteBuffer.allocate(0).asReadOnlyBuffer());
+            }
+
+            R result = null;
+            for (long windowPosition = 0; windowPosition < size; windowPosition += windowSize) {
+                /**
+                 * The previous window is not referenced anymore, it is unmapped once garbage collected.
+                 * The ranges are slices of the window, they need no mapping of their own.
+                 */
+                long windowLength = Math.min(windowSize, size - windowPosition);
+                MappedByteBuffer window = fileChannel.map(FileChannel.MapMode.READ_ONLY, windowPosition, windowLength);
+
+                R windowResult = pool.invoke(new RangeTask<>(window, 0, (int) windowLength, (int) Math.min(rangeSize, windowLength),
+                        rangeConsumer, combiner));
+                result = result == null ? windowResult : combiner.apply(result, windowResult);
+            }
+            return result;
+
+        } catch (IOException e) {
+            logger.info("Exception during read: {} on input data: {}", e.getMessage(), this);
+            throw e;
+        }
+    }
+
+    /**
+     * Processes the ranges between from and to of a mapped window, splitting them in halves down to the range size.
+     * Never serialized, like any task: its window and functions are not serializable.
+     */
+    @SuppressWarnings("serial")
+    private static class RangeTask<R> extends RecursiveTask<R> {
+
+        private final ByteBuffer window;
+        private final int from;
+        private final int to;
+        private final int rangeSize;
+        private final Function<ByteBuffer, R> rangeConsumer;
+        private final BinaryOperator<R> combiner;
+
+        RangeTask(ByteBuffer window, int from, int to, int rangeSize, Function<ByteBuffer, R> rangeConsumer,
+                  BinaryOperator<R> combiner) {
+            this.window = window;
+            this.from = from;
+            this.to = to;
+            this.rangeSize = rangeSize;
+            this.rangeConsumer = rangeConsumer;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= rangeSize) {
+                // An absolute slice, the window's own position is shared by every task and never moved
+                return rangeConsumer.apply(window.slice(from, to - from).asReadOnlyBuffer());
+            }
+
+            // Split at a range boundary, so every range but the last one has the range size
+            int ranges = (to - from + rangeSize - 1) / rangeSize;
+            int middle = from + (ranges / 2) * rangeSize;
+
+            RangeTask<R> left = new RangeTask<>(window, from, middle, rangeSize, rangeConsumer, combiner);
+            RangeTask<R> right = new RangeTask<>(window, middle, to, rangeSize, rangeConsumer, combiner);
+            left.fork();
+            R rightResult = right.compute();
+            return combiner.apply(left.join(), rightResult);
+        }
+    }
 }
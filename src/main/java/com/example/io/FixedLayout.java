@@ -0,0 +1,533 @@
+package com.example.io;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * The fixed layout of a record whose components are all primitives: every record takes the same number of bytes, and
+ * every component is at the same offset in it, so a component can be read from a ByteBuffer of records without
+ * decoding anything else.
+ * <p>
+ * The components are stored in declaration order, without padding, big-endian. A {@link Flyweight} is a cursor over a
+ * buffer of records, possibly a mapped file: the typed fields of the layout, such as {@link IntField}, read one
+ * component of the record under the cursor, so filtering and projecting a dataset allocates nothing per record. A
+ * field only reads the flyweights of its own layout.
+ * {@link Flyweight#materialize()} creates the record under the cursor when it is needed as an object.
+ * <p>
+ * Usage Example:
+ * ```java
+ * record Employee(int id, double salary) {}
+ * <p>
+ * FixedLayout<Employee> layout = FixedLayout.of(Employee.class);
+ * FixedLayout.DoubleField salary = layout.doubleField("salary");
+ * <p>
+ * FixedLayout.Flyweight<Employee> cursor = layout.flyweight(mappedBuffer);
+ * while (cursor.next()) {
+ * if (salary.get(cursor) > 50000) {
+ * highEarners.add(cursor.materialize());
+ * }
+ * }
+ * ```
+ */
+public final class FixedLayout<T extends Record> {
+
+    private static final ClassValue<FixedLayout<?>> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected FixedLayout<?> computeValue(Class<?> type) {
+            return new FixedLayout<>(type.asSubclass(Record.class));
+        }
+    };
+
+    private enum Kind {
+        BOOLEAN(boolean.class, 1), BYTE(byte.class, 1), SHORT(short.class, 2), CHAR(char.class, 2),
+        INT(int.class, 4), LONG(long.class, 8), FLOAT(float.class, 4), DOUBLE(double.class, 8);
+
+        private final Class<?> type;
+        private final int size;
+
+        Kind(Class<?> type, int size) {
+            this.type = type;
+            this.size = size;
+        }
+
+        static Kind of(Class<?> type) {
+            for (Kind kind : values()) {
+                if (kind.type == type) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("Not a primitive: " + type.getName());
+        }
+    }
+
+    private final Class<T> type;
+    private final String[] names;
+    private final Kind[] kinds;
+    private final int[] offsets;
+    private final int recordSize;
+
+    /**
+     * The accessor of every component, returning its primitive, and the canonical constructor taking an Object[].
+     */
+    private final MethodHandle[] getters;
+    private final MethodHandle constructor;
+
+    private FixedLayout(Class<T> type) {
+        if (!type.isRecord())
+            throw new IllegalArgumentException("Not a record: " + type.getName());
+        this.type = type;
+
+        RecordComponent[] components = type.getRecordComponents();
+        if (components.length == 0)
+            throw new IllegalArgumentException("No components in " + type.getName());
+        names = new String[components.length];
+        kinds = new Kind[components.length];
+        offsets = new int[components.length];
+        getters = new MethodHandle[components.length];
+        int offset = 0;
+        try {
+            for (int i = 0; i < components.length; i++) {
+                RecordComponent component = components[i];
+                Class<?> componentType = component.getType();
+                if (!componentType.isPrimitive())
+                    throw new IllegalArgumentException("Component " + component.getName() + " of " + type.getName()
+                            + " is not a primitive: " + componentType.getName());
+
+                names[i] = component.getName();
+                kinds[i] = Kind.of(componentType);
+                offsets[i] = offset;
+                offset += kinds[i].size;
+
+                component.getAccessor().setAccessible(true);
+                getters[i] = MethodHandles.lookup().unreflect(component.getAccessor())
+                        .asType(MethodType.methodType(componentType, Object.class));
+            }
+
+            Class<?>[] componentTypes = Arrays.stream(components).map(RecordComponent::getType)
+                    .toArray(Class<?>[]::new);
+            Constructor<T> canonical = type.getDeclaredConstructor(componentTypes);
+            canonical.setAccessible(true);
+            constructor = MethodHandles.lookup().unreflectConstructor(canonical)
+                    .asSpreader(Object[].class, components.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Members of " + type.getName() + " not accessible", e);
+        }
+        this.recordSize = offset;
+    }
+
+    /**
+     * Returns the layout of the record class, created once per class.
+     *
+     * @throws IllegalArgumentException If the record has no components, or one of them is not a primitive.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Record> FixedLayout<T> of(Class<T> type) {
+        return (FixedLayout<T>) LAYOUTS.get(type);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of bytes of every record.
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Returns the offset of the component in a record.
+     */
+    public int getOffset(String name) {
+        return offsets[indexOf(name)];
+    }
+
+    public BooleanField booleanField(String name) {
+        return new BooleanField(this, offset(name, Kind.BOOLEAN));
+    }
+
+    public ByteField byteField(String name) {
+        return new ByteField(this, offset(name, Kind.BYTE));
+    }
+
+    public ShortField shortField(String name) {
+        return new ShortField(this, offset(name, Kind.SHORT));
+    }
+
+    public CharField charField(String name) {
+        return new CharField(this, offset(name, Kind.CHAR));
+    }
+
+    public IntField intField(String name) {
+        return new IntField(this, offset(name, Kind.INT));
+    }
+
+    public LongField longField(String name) {
+        return new LongField(this, offset(name, Kind.LONG));
+    }
+
+    public FloatField floatField(String name) {
+        return new FloatField(this, offset(name, Kind.FLOAT));
+    }
+
+    public DoubleField doubleField(String name) {
+        return new DoubleField(this, offset(name, Kind.DOUBLE));
+    }
+
+    /**
+     * Writes the record at the given offset of the buffer, without changing its position.
+     */
+    public void write(T record, ByteBuffer buffer, int offset) {
+        Objects.requireNonNull(record, "Record cannot be null");
+        Objects.checkFromIndexSize(offset, recordSize, buffer.limit());
+        ByteBuffer target = bigEndian(buffer);
+        try {
+            for (int i = 0; i < kinds.length; i++) {
+                MethodHandle getter = getters[i];
+                int position = offset + offsets[i];
+                switch (kinds[i]) {
+                    case BOOLEAN -> target.put(position,
+                            (byte) ((boolean) getter.invokeExact((Object) record) ? 1 : 0));
+                    case BYTE -> target.put(position, (byte) getter.invokeExact((Object) record));
+                    case SHORT -> target.putShort(position, (short) getter.invokeExact((Object) record));
+                    case CHAR -> target.putChar(position, (char) getter.invokeExact((Object) record));
+                    case INT -> target.putInt(position, (int) getter.invokeExact((Object) record));
+                    case LONG -> target.putLong(position, (long) getter.invokeExact((Object) record));
+                    case FLOAT -> target.putFloat(position, (float) getter.invokeExact((Object) record));
+                    case DOUBLE -> target.putDouble(position, (double) getter.invokeExact((Object) record));
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot read the components of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the bytes of the record.
+     */
+    public byte[] encode(T record) {
+        byte[] bytes = new byte[recordSize];
+        write(record, ByteBuffer.wrap(bytes), 0);
+        return bytes;
+    }
+
+    /**
+     * Creates the record stored at the given offset of the buffer.
+     */
+    public T read(ByteBuffer buffer, int offset) {
+        Objects.checkFromIndexSize(offset, recordSize, buffer.limit());
+        ByteBuffer source = bigEndian(buffer);
+        Object[] values = new Object[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            int position = offset + offsets[i];
+            values[i] = switch (kinds[i]) {
+                case BOOLEAN -> source.get(position) != 0;
+                case BYTE -> source.get(position);
+                case SHORT -> source.getShort(position);
+                case CHAR -> source.getChar(position);
+                case INT -> source.getInt(position);
+                case LONG -> source.getLong(position);
+                case FLOAT -> source.getFloat(position);
+                case DOUBLE -> source.getDouble(position);
+            };
+        }
+        try {
+            return type.cast((Object) constructor.invokeExact(values));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot create " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Decodes the bytes of one record, see {@link #encode}.
+     */
+    public T decode(byte[] bytes) throws IOException {
+        if (bytes.length != recordSize)
+            throw new InvalidClassException(type.getName(), "record of " + recordSize + " bytes, got " + bytes.length);
+        return read(ByteBuffer.wrap(bytes), 0);
+    }
+
+    /**
+     * Returns a writer of records, one after the other without any header or framing, so that the output can be read
+     * back with a flyweight, e.g. over the mapping of a file. Every record is written through the same buffer.
+     */
+    public ObjectWriter<T> newWriter(OutputStream outputStream) {
+        BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(
+                Objects.requireNonNull(outputStream, "Output stream cannot be null"), FramedObjectWriter.BUFFER_SIZE);
+        byte[] bytes = new byte[recordSize];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        return new ObjectWriter<>() {
+            @Override
+            public void write(T record) throws IOException {
+                FixedLayout.this.write(record, buffer, 0);
+                bufferedOutputStream.write(bytes);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                bufferedOutputStream.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                bufferedOutputStream.close();
+            }
+        };
+    }
+
+    /**
+     * Returns a cursor over the records between the position and the limit of the buffer, before the first one. The
+     * buffer itself is not modified, the flyweight reads a read-only view of it.
+     *
+     * @throws IllegalArgumentException If the bytes are not a whole number of records.
+     */
+    public Flyweight<T> flyweight(ByteBuffer buffer) {
+        if (buffer.remaining() % recordSize != 0)
+            throw new IllegalArgumentException(buffer.remaining() + " bytes are not a whole number of records of "
+                    + recordSize + " bytes");
+        return new Flyweight<>(this, buffer.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("FixedLayout{").append(type.getSimpleName());
+        for (int i = 0; i < names.length; i++) {
+            builder.append(i == 0 ? ": " : ", ").append(names[i]).append('@').append(offsets[i]);
+        }
+        return builder.append(", size=").append(recordSize).append('}').toString();
+    }
+
+    private static ByteBuffer bigEndian(ByteBuffer buffer) {
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? buffer : buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No component " + name + " in " + type.getName());
+    }
+
+    /**
+     * Returns the position of the component at the given offset in the record under the cursor.
+     *
+     * @throws IllegalArgumentException If the flyweight is over records of another layout.
+     */
+    private int position(Flyweight<?> flyweight, int offset) {
+        if (flyweight.layout != this)
+            throw new IllegalArgumentException("Field of " + type.getName() + ", flyweight over "
+                    + flyweight.layout.type.getName());
+        return flyweight.base + offset;
+    }
+
+    private int offset(String name, Kind kind) {
+        int index = indexOf(name);
+        if (kinds[index] != kind)
+            throw new IllegalArgumentException("Component " + name + " of " + type.getName() + " is a "
+                    + kinds[index].type.getName() + ", not a " + kind.type.getName());
+        return offsets[index];
+    }
+
+    /**
+     * A cursor over a buffer of records of one layout. It holds no values itself: the fields of the layout read them
+     * from the buffer, at the offset of the record under the cursor. One flyweight serves any number of records, it is
+     * not thread-safe.
+     */
+    public static final class Flyweight<T extends Record> {
+
+        private final FixedLayout<T> layout;
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int count;
+        private int index = -1;
+        private int base;
+
+        private Flyweight(FixedLayout<T> layout, ByteBuffer buffer) {
+            this.layout = layout;
+            this.buffer = buffer;
+            this.start = buffer.position();
+            this.count = buffer.remaining() / layout.recordSize;
+        }
+
+        /**
+         * Returns the number of records of the buffer.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Returns the index of the record under the cursor, -1 before the first one.
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * Moves the cursor to the record of the given index.
+         */
+        public Flyweight<T> moveTo(int index) {
+            Objects.checkIndex(index, count);
+            this.index = index;
+            this.base = start + index * layout.recordSize;
+            return this;
+        }
+
+        /**
+         * Moves the cursor to the next record.
+         *
+         * @return false once past the last record.
+         */
+        public boolean next() {
+            if (index + 1 >= count) {
+                index = count;
+                return false;
+            }
+            moveTo(index + 1);
+            return true;
+        }
+
+        /**
+         * Creates the record under the cursor.
+         */
+        public T materialize() {
+            if (index < 0 || index >= count) {
+                throw new NoSuchElementException("No record under the cursor");
+            }
+            return layout.read(buffer, base);
+        }
+    }
+
+    public static final class BooleanField {
+        private final FixedLayout<?> layout;
+        private final int offset;
+
+        private BooleanField(FixedLayout<?> layout, int offset) {
+            this.layout = layout;
+            this.offset = offset;
+        }
+
+        public boolean get(Flyweight<?> flyweight) {
+            return flyweight.buffer.get(layout.position(flyweight, offset)) != 0;
+        }
+    }
+
+    public static final class ByteField {
+        private final FixedLayout<?> layout;
+        private final int offset;
+
+        private ByteField(FixedLayout<?> layout, int offset) {
+            this.layout = layout;
+            this.offset = offset;
+        }
+
+        public byte get(Flyweight<?> flyweight) {
+            return flyweight.buffer.get(layout.position(flyweight, offset));
+        }
+    }
+
+    public static final class ShortField {
+        private final FixedLayout<?> layout;
+        private final int offset;
+
+        private ShortField(FixedLayout<?> layout, int offset) {
+            this.layout = layout;
+            this.offset = offset;
+        }
+
+        public short get(Flyweight<?> flyweight) {
+            return flyweight.buffer.getShort(layout.position(flyweight, offset));
+        }
+    }
+
+    public static final class CharField {
+        private final FixedLayout<?> layout;
+        private final int offset;
+
+        private CharField(FixedLayout<?> layout, int offset) {
+            this.layout = layout;
+            this.offset = offset;
+        }
+
+        public char get(Flyweight<?> flyweight) {
+            return flyweight.buffer.getChar(layout.position(flyweight, offset));
+        }
+    }
+
+    public static final class IntField {
+        private final FixedLayout<?> layout;
+        private final int offset;
+
+        private IntField(FixedLayout<?> layout, int offset) {
+            this.layout = layout;
+            this.offset = offset;
+        }
+
+        public int get(Flyweight<?> flyweight) {
+            return flyweight.buffer.getInt(layout.position(flyweight, offset));
+        }
+    }
+
+    public static final class LongField {
+        private final FixedLayout<?> layout;
+        private final int offset;
+
+        private LongField(FixedLayout<?> layout, int offset) {
+            this.layout = layout;
+            this.offset = offset;
+        }
+
+        public long get(Flyweight<?> flyweight) {
+            return flyweight.buffer.getLong(layout.position(flyweight, offset));
+        }
+    }
+
+    public static final class FloatField {
+        private final FixedLayout<?> layout;
+        private final int offset;
+
+        private FloatField(FixedLayout<?> layout, int offset) {
+            this.layout = layout;
+            this.offset = offset;
+        }
+
+        public float get(Flyweight<?> flyweight) {
+            return flyweight.buffer.getFloat(layout.position(flyweight, offset));
+        }
+    }
+
+    public static final class DoubleField {
+        private final FixedLayout<?> layout;
+        private final int offset;
+
+        private DoubleField(FixedLayout<?> layout, int offset) {
+            this.layout = layout;
+            this.offset = offset;
+        }
+
+        public double get(Flyweight<?> flyweight) {
+            return flyweight.buffer.getDouble(layout.position(flyweight, offset));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.io;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Reads the frames written by {@link FramedObjectWriter}, one object ahead at most.
+ * <p>
+ * Every frame is read into the same growable array. The array only grows as bytes actually arrive, so a corrupted
+ * length cannot make it allocate more than the stream holds. The end of the stream at a frame boundary ends the
+ * iteration, anywhere else it is an EOFException.
+ */
+final class FramedObjectReader<T> implements ObjectReader<T> {
+
+    @FunctionalInterface
+    interface Decoder<T> {
+        T decode(byte[] bytes, int length) throws IOException, ClassNotFoundException;
+    }
+
+    private final InputStream inputStream;
+    private final Decoder<T> decoder;
+    private byte[] frame = new byte[256];
+    private T next;
+    private boolean done;
+
+    FramedObjectReader(InputStream inputStream, Decoder<T> decoder) {
+        this.inputStream = buffered(inputStream);
+        this.decoder = decoder;
+    }
+
+    /**
+     * Wraps the stream in a BufferedInputStream, unless it already is one.
+     */
+    static InputStream buffered(InputStream inputStream) {
+        Objects.requireNonNull(inputStream, "Input stream cannot be null");
+        return inputStream instanceof BufferedInputStream
+                ? inputStream : new BufferedInputStream(inputStream, FramedObjectWriter.BUFFER_SIZE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (done) {
+            return false;
+        }
+        try {
+            next = readFrame();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new UncheckedIOException(new IOException(e));
+        }
+        done = next == null;
+        return !done;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T object = next;
+        next = null;
+        return object;
+    }
+
+    private T readFrame() throws IOException, ClassNotFoundException {
+        int b = inputStream.read();
+        if (b < 0) {
+            return null;
+        }
+
+        // The length, a varint
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift == 35)
+                throw new StreamCorruptedException("Frame length longer than 5 bytes");
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            b = inputStream.read();
+            if (b < 0)
+                throw new EOFException("Unexpected end of stream in a frame length");
+        }
+        if (length < 0)
+            throw new StreamCorruptedException("Invalid frame length: " + length);
+
+        int read = 0;
+        while (read < length) {
+            if (read == frame.length) {
+                frame = Arrays.copyOf(frame, (int) Math.min(length, frame.length * 2L));
+            }
+            int count = inputStream.read(frame, read, Math.min(length, frame.length) - read);
+            if (count < 0)
+                throw new EOFException("Unexpected end of stream, " + (length - read) + " bytes of a frame missing");
+            read += count;
+        }
+        return decoder.decode(frame, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        done = true;
+        next = null;
+        inputStream.close();
+    }
+}
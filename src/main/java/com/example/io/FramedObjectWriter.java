@@ -0,0 +1,61 @@
+package com.example.io;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * Writes every object as a frame, its length as a varint followed by its bytes, after an optional stream header.
+ * <p>
+ * Every object is encoded into the same growable buffer, and the frames go through one BufferedOutputStream, so
+ * writing an object allocates nothing once the buffer has grown to the largest object.
+ */
+final class FramedObjectWriter<T> implements ObjectWriter<T> {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    interface Encoder {
+        void encode(Object object, BinaryOutput out) throws IOException;
+    }
+
+    private final OutputStream outputStream;
+    private final Encoder encoder;
+    private final BinaryOutput frame = new BinaryOutput(256);
+    private final BinaryOutput length = new BinaryOutput(5);
+
+    /**
+     * @param header Written once, first, or null.
+     */
+    FramedObjectWriter(OutputStream outputStream, byte[] header, Encoder encoder) throws IOException {
+        this.outputStream = new BufferedOutputStream(
+                Objects.requireNonNull(outputStream, "Output stream cannot be null"), BUFFER_SIZE);
+        this.encoder = encoder;
+        if (header != null) {
+            this.outputStream.write(header);
+        }
+    }
+
+    @Override
+    public void write(T object) throws IOException {
+        Objects.requireNonNull(object, "Object cannot be null");
+        frame.reset();
+        encoder.encode(object, frame);
+
+        length.reset();
+        length.writeVarInt(frame.size());
+        length.writeTo(outputStream);
+        frame.writeTo(outputStream);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+}
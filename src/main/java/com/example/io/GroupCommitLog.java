@@ -0,0 +1,329 @@
+package com.example.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An append-only log shared by many producer threads, made durable by group commit: the records appended while a
+ * batch is being written and forced form the next batch, written and forced by a single flusher thread with one write
+ * and one force, however many producers appended to it.
+ * <p>
+ * {@link #append} encodes a record on the producer thread, copies it into the current batch and returns a future,
+ * completed with the offset of the record in the file once its batch is forced to the storage device. Only the copy
+ * runs under the lock: a slow encoder does not hold the other producers back, and an encoder may append records
+ * itself. Under load a force covers hundreds of records,
+ * while an idle log forces a lone record immediately. Producers wait when the current batch is full, until the flusher
+ * takes it, so a slow device slows the producers down instead of growing the batch without bound.
+ * <p>
+ * The lock is a ReentrantLock, so producers running on virtual threads release their carrier while waiting.
+ * <p>
+ * Usage Example:
+ * ```java
+ * try (GroupCommitLog log = new GroupCommitLog(Path.of("employees.log"))) {
+ * CompletableFuture<Long> committed = log.append(out -> {
+ * out.writeInt(1);
+ * out.writeUTF("John Doe");
+ * out.writeDouble(50000.0);
+ * });
+ * committed.join(); // durable
+ * }
+ * ```
+ */
+public final class GroupCommitLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitLog.class);
+
+    /**
+     * The size of a batch past which producers wait for the flusher.
+     */
+    static final int BATCH_SIZE = 1024 * 1024;
+
+    private static final int POOL_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Encoders grown past this capacity by a large record are not pooled, so they do not stay allocated.
+     */
+    private static final int MAX_POOLED_CAPACITY = DataRecordWriter.BUFFER_SIZE;
+
+    /**
+     * Writes one record to the log, on the producer thread and outside of the lock of the log.
+     */
+    @FunctionalInterface
+    public interface RecordEncoder {
+        void encode(DataOutput out) throws IOException;
+    }
+
+    /**
+     * The records appended since the last swap, and the futures to complete once they are forced.
+     */
+    private static final class Batch {
+        final DataRecordWriter records;
+        final List<CompletableFuture<Long>> futures = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+
+        Batch(int capacity) {
+            this.records = new DataRecordWriter(capacity);
+        }
+
+        int size() {
+            return records.buffer().position();
+        }
+
+        boolean isEmpty() {
+            return futures.isEmpty();
+        }
+
+        void clear() {
+            records.buffer().clear();
+            futures.clear();
+            offsets.clear();
+        }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int batchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final BlockingQueue<DataRecordWriter> encoders = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final Thread flusher;
+
+    private Batch current;
+    private Batch spare;
+
+    /**
+     * The offset in the file of the next record appended.
+     */
+    private long position;
+    private long batchCount;
+    private boolean closed;
+    private IOException failure;
+
+    public GroupCommitLog(Path path) throws IOException {
+        this(path, BATCH_SIZE);
+    }
+
+    /**
+     * Opens the log, appending to the file if it exists.
+     *
+     * @param batchSize The size of a batch past which producers wait for the flusher.
+     */
+    public GroupCommitLog(Path path, int batchSize) throws IOException {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Batch size must be a positive value");
+        this.path = Objects.requireNonNull(path, "Path cannot be null");
+        this.batchSize = batchSize;
+        this.current = new Batch(batchSize);
+        this.spare = new Batch(batchSize);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.position = channel.size();
+        this.flusher = Thread.ofPlatform()
+                .name("group-commit-" + path.getFileName())
+                .daemon()
+                .start(this::flushLoop);
+    }
+
+    /**
+     * Appends a record, atomically: the records of other producers come before or after it, never inside it.
+     *
+     * @return A future completed with the offset of the record once it is forced to the storage device, or completed
+     * exceptionally if writing its batch fails. Its non-async dependent actions run on the flusher thread.
+     * @throws IOException If the encoder fails, the record is not appended. If the log is closed or failed.
+     */
+    public CompletableFuture<Long> append(RecordEncoder encoder) throws IOException {
+        Objects.requireNonNull(encoder, "Encoder cannot be null");
+        DataRecordWriter record = acquire();
+        try {
+            encoder.encode(record);
+            return append(record.buffer().flip());
+        } finally {
+            release(record);
+        }
+    }
+
+    /**
+     * Appends the bytes as one record.
+     */
+    public CompletableFuture<Long> append(byte[] record) throws IOException {
+        Objects.requireNonNull(record, "Record cannot be null");
+        return append(ByteBuffer.wrap(record));
+    }
+
+    /**
+     * Returns the number of batches written and forced so far, each covering one or more records.
+     */
+    public long getBatchCount() {
+        lock.lock();
+        try {
+            return batchCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting records, waits for the records appended to be committed, and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the flusher");
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GroupCommitLog{" +
+                "path=" + path +
+                ", position=" + position +
+                '}';
+    }
+
+    /**
+     * Copies the remaining bytes of the record into the current batch, waiting while it is full.
+     */
+    private CompletableFuture<Long> append(ByteBuffer record) throws IOException {
+        lock.lock();
+        try {
+            while (current.size() >= batchSize && !closed && failure == null) {
+                notFull.await();
+            }
+            if (failure != null)
+                throw new IOException("Log failed: " + path, failure);
+            if (closed)
+                throw new ClosedChannelException();
+
+            if (current.isEmpty()) {
+                notEmpty.signal();
+            }
+            int length = record.remaining();
+            current.records.write(record);
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            current.futures.add(future);
+            current.offsets.add(position);
+            position += length;
+            return future;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the flusher");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private DataRecordWriter acquire() {
+        DataRecordWriter record = encoders.poll();
+        return record != null ? record : new DataRecordWriter(INITIAL_CAPACITY);
+    }
+
+    private void release(DataRecordWriter record) {
+        if (record.buffer().capacity() <= MAX_POOLED_CAPACITY) {
+            record.buffer().clear();
+            encoders.offer(record);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            Batch batch;
+            lock.lock();
+            try {
+                while (current.isEmpty() && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (current.isEmpty())
+                    return;
+                batch = current;
+                current = spare;
+                spare = batch;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = commit(batch);
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                    // The records appended since can never be committed after the failed batch
+                    fail(current, error);
+                    notFull.signalAll();
+                } else {
+                    batchCount++;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (error != null)
+                return;
+        }
+    }
+
+    /**
+     * Writes and forces a batch, then completes its futures. Runs outside the lock, while producers fill the other
+     * batch.
+     */
+    private IOException commit(Batch batch) {
+        try {
+            ByteBuffer buffer = batch.records.buffer().flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            logger.info("Exception during commit: {} on log: {}", e.getMessage(), this);
+            fail(batch, e);
+            return e;
+        }
+
+        for (int i = 0; i < batch.futures.size(); i++) {
+            batch.futures.get(i).complete(batch.offsets.get(i));
+        }
+        batch.clear();
+        return null;
+    }
+
+    private static void fail(Batch batch, IOException error) {
+        for (CompletableFuture<Long> future : batch.futures) {
+            future.completeExceptionally(error);
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Java's built-in serialization: ObjectOutputStream and ObjectInputStream, for any Serializable object.
+ * <p>
+ * Every payload holds the stream header and the descriptors of the classes of the object graph, so it is large for
+ * small objects, and deserializing untrusted bytes can instantiate any class of the classpath: pass an
+ * ObjectInputFilter to restrict the classes accepted, or use {@link #filteredByType} to derive one from each
+ * requested type.
+ * <p>
+ * A stream of many objects is one ObjectOutputStream instead: its header is written once and each class descriptor
+ * once per {@link #RESET_INTERVAL} objects.
+ */
+public class JdkCodec implements Codec {
+
+    /**
+     * The number of objects between two resets of a stream. An ObjectOutputStream keeps a reference to every object
+     * written until it is reset, and the reader does the same: the resets bound the memory of both for streams of
+     * millions of objects, at the cost of writing the class descriptors again after each one.
+     */
+    static final int RESET_INTERVAL = 1024;
+
+    /**
+     * The classes declared by the fields of a class, its own included, see {@link #forType}.
+     */
+    private static final ClassValue<Set<Class<?>>> DECLARED_CLASSES = new ClassValue<>() {
+        @Override
+        protected Set<Class<?>> computeValue(Class<?> type) {
+            Set<Class<?>> classes = new HashSet<>();
+            addDeclaredClasses(type, classes);
+            return Set.copyOf(classes);
+        }
+    };
+
+    private final Function<Class<?>, ObjectInputFilter> filters;
+
+    public JdkCodec() {
+        this((ObjectInputFilter) null);
+    }
+
+    /**
+     * @param filter Accepts or rejects the classes, array lengths and depth of the objects decoded, or null for the
+     *               JVM-wide filter.
+     */
+    public JdkCodec(ObjectInputFilter filter) {
+        this.filters = type -> filter;
+    }
+
+    private JdkCodec(Function<Class<?>, ObjectInputFilter> filters) {
+        this.filters = filters;
+    }
+
+    /**
+     * Returns a codec filtering the objects decoded with {@link #forType} of the type requested.
+     * <p>
+     * Usage Example:
+     * ```java
+     * Codec codec = JdkCodec.filteredByType();
+     * MyClass object = codec.decode(bytes, MyClass.class);
+     * ```
+     */
+    public static JdkCodec filteredByType() {
+        return new JdkCodec(JdkCodec::forType);
+    }
+
+    /**
+     * Returns a filter accepting the classes of the java packages, the type and the classes declared by its fields,
+     * recursively, and rejecting any other class: the bytes cannot name a class the type does not lead to.
+     * <p>
+     * Objects of subclasses of the declared classes are rejected, unless they belong to the java packages.
+     */
+    public static ObjectInputFilter forType(Class<?> type) {
+        Set<Class<?>> declaredClasses = DECLARED_CLASSES.get(type);
+        return info -> {
+            Class<?> serialClass = info.serialClass();
+            if (serialClass == null)
+                return ObjectInputFilter.Status.UNDECIDED;
+            while (serialClass.isArray()) {
+                serialClass = serialClass.getComponentType();
+            }
+            if (serialClass.isPrimitive() || isJava(serialClass) || declaredClasses.contains(serialClass))
+                return ObjectInputFilter.Status.ALLOWED;
+            return ObjectInputFilter.Status.REJECTED;
+        };
+    }
+
+    private static boolean isJava(Class<?> type) {
+        return type.getName().startsWith("java.");
+    }
+
+    /**
+     * Adds the class of the type, its superclasses and the classes declared by their serialized fields, with the
+     * arguments of generic types.
+     */
+    private static void addDeclaredClasses(Type type, Set<Class<?>> classes) {
+        if (type instanceof ParameterizedType parameterizedType) {
+            addDeclaredClasses(parameterizedType.getRawType(), classes);
+            for (Type argument : parameterizedType.getActualTypeArguments()) {
+                addDeclaredClasses(argument, classes);
+            }
+        } else if (type instanceof GenericArrayType arrayType) {
+            addDeclaredClasses(arrayType.getGenericComponentType(), classes);
+        } else if (type instanceof WildcardType wildcardType) {
+            for (Type bound : wildcardType.getUpperBounds()) {
+                addDeclaredClasses(bound, classes);
+            }
+        } else if (type instanceof Class<?> declaredClass) {
+            while (declaredClass.isArray()) {
+                declaredClass = declaredClass.getComponentType();
+            }
+            for (Class<?> current = declaredClass; current != null && !current.isPrimitive() && !isJava(current);
+                 current = current.getSuperclass()) {
+                if (!classes.add(current))
+                    return;
+                for (Field field : current.getDeclaredFields()) {
+                    if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0) {
+                        addDeclaredClasses(field.getGenericType(), classes);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+            objectOutputStream.writeObject(object);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            ObjectInputFilter filter = filters.apply(type);
+            if (filter != null) {
+                objectInputStream.setObjectInputFilter(filter);
+            }
+            return type.cast(objectInputStream.readObject());
+        }
+    }
+
+    /**
+     * Writes the objects with writeUnshared to one ObjectOutputStream, and a null to end the stream.
+     */
+    @Override
+    public <T> ObjectWriter<T> newWriter(OutputStream outputStream, Class<T> type) throws IOException {
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(
+                new BufferedOutputStream(outputStream, FramedObjectWriter.BUFFER_SIZE));
+
+        return new ObjectWriter<>() {
+            private int count;
+
+            @Override
+            public void write(T object) throws IOException {
+                Objects.requireNonNull(object, "Object cannot be null");
+                // Unshared: the stream does not keep the object to write back references to it
+                objectOutputStream.writeUnshared(object);
+                if (++count % RESET_INTERVAL == 0) {
+                    objectOutputStream.reset();
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                objectOutputStream.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                try (objectOutputStream) {
+                    objectOutputStream.writeObject(null);
+                }
+            }
+        };
+    }
+
+    @Override
+    public <T> ObjectReader<T> newReader(InputStream inputStream, Class<T> type) throws IOException {
+        ObjectInputStream objectInputStream = new ObjectInputStream(FramedObjectReader.buffered(inputStream));
+        ObjectInputFilter filter = filters.apply(type);
+        if (filter != null) {
+            objectInputStream.setObjectInputFilter(filter);
+        }
+
+        return new ObjectReader<>() {
+            private T next;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done) {
+                    try {
+                        next = type.cast(objectInputStream.readUnshared());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (ClassNotFoundException e) {
+                        throw new UncheckedIOException(new IOException(e));
+                    }
+                    // The null written by close
+                    done = next == null;
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T object = next;
+                next = null;
+                return object;
+            }
+
+            @Override
+            public void close() throws IOException {
+                done = true;
+                next = null;
+                objectInputStream.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits the bytes between two offsets of a file into lines, used by {@link FileReaderCharacterStream}.
+ * <p>
+ * The bytes are read with positional reads on a shared FileChannel, so several spliterators can read their own range
+ * of the same file concurrently. Lines are found on the bytes: the charset must encode a line feed as the single byte
+ * 0x0A and never use that byte inside another character, which holds for UTF-8, US-ASCII and the ISO-8859 family but
+ * not for UTF-16. A block of complete lines is then decoded at once, by {@link Utf8Decoder} for UTF-8 and US-ASCII,
+ * and each line is a CharBuffer over the decoded chars, without a String per line. The line terminator, "\n" or "\r\n", is not part of the line.
+ * <p>
+ * In reuse mode the chars and the line view are recycled by every block, a line is only valid during the callback.
+ * Otherwise every block is decoded into its own char[], so the lines can be kept, e.g. by a Stream.
+ * <p>
+ * trySplit cuts the remaining range in two at the first line feed after its middle, so both halves only hold whole
+ * lines, and hands the first half over with the bytes and chars read so far.
+ */
+class LineSpliterator implements Spliterator<CharSequence> {
+
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final byte LINE_FEED = '\n';
+    private static final char CARRIAGE_RETURN = '\r';
+
+    private final FileChannel fileChannel;
+    private final Charset charset;
+    private final CharsetDecoder decoder;
+    private final Utf8Decoder utf8Decoder;
+    private final boolean reuse;
+    private final long minSplitSize;
+
+    // The next byte to read and the end of the range
+    private long position;
+    private long end;
+
+    private ByteBuffer bytes;
+    private char[] chars = new char[0];
+    private CharBuffer view;
+    private int charPosition;
+    private int charLimit;
+
+    LineSpliterator(FileChannel fileChannel, long position, long end, Charset charset, boolean reuse,
+                    long minSplitSize) {
+        if (!Arrays.equals("\n".getBytes(charset), new byte[]{LINE_FEED}))
+            throw new IllegalArgumentException("Charset must encode a line feed as a single byte: " + charset);
+        this.fileChannel = fileChannel;
+        this.position = position;
+        this.end = end;
+        this.charset = charset;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        this.utf8Decoder = Utf8Decoder.forCharset(charset);
+        this.reuse = reuse;
+        this.minSplitSize = minSplitSize;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super CharSequence> action) {
+        try {
+            if (charPosition >= charLimit && !decodeNextBlock()) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // The next line of the decoded block, its line feed is skipped
+        int lineEnd = charPosition;
+        while (lineEnd < charLimit && chars[lineEnd] != LINE_FEED) {
+            lineEnd++;
+        }
+        int lineLimit = lineEnd > charPosition && chars[lineEnd - 1] == CARRIAGE_RETURN ? lineEnd - 1 : lineEnd;
+
+        CharBuffer line;
+        if (reuse) {
+            view.limit(lineLimit);
+            view.position(charPosition);
+            line = view;
+        } else {
+            line = CharBuffer.wrap(chars, charPosition, lineLimit - charPosition);
+        }
+        charPosition = lineEnd + 1;
+
+        action.accept(line);
+        return true;
+    }
+
+    /**
+     * Reads the bytes up to the last line feed of the buffer, or to the end of the range, and decodes them.
+     *
+     * @return false once the range has been read entirely.
+     */
+    private boolean decodeNextBlock() throws IOException {
+        if (bytes == null) {
+            bytes = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        }
+
+        int lastLineFeed = -1;
+        while (lastLineFeed < 0) {
+            if (position >= end) {
+                if (bytes.position() == 0) {
+                    return false;
+                }
+                // The last line of the range has no line feed
+                lastLineFeed = bytes.position() - 1;
+                break;
+            }
+
+            // A line longer than the buffer: grow it
+            if (!bytes.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(bytes.capacity() * 2);
+                bytes.flip();
+                larger.put(bytes);
+                bytes = larger;
+            }
+
+            int start = bytes.position();
+            bytes.limit((int) Math.min(bytes.capacity(), start + (end - position)));
+            int bytesRead = fileChannel.read(bytes, position);
+            if (bytesRead < 0) {
+                // The file was truncated, the range ends here
+                end = position;
+                continue;
+            }
+            position += bytesRead;
+
+            for (int i = bytes.position() - 1; i >= start; i--) {
+                if (bytes.get(i) == LINE_FEED) {
+                    lastLineFeed = i;
+                    break;
+                }
+            }
+        }
+
+        // Decode the complete lines, the bytes after the last line feed stay for the next block
+        int remaining = bytes.position();
+        bytes.position(0).limit(lastLineFeed + 1);
+        decode(bytes);
+        bytes.limit(remaining);
+        bytes.compact();
+        return true;
+    }
+
+    private void decode(ByteBuffer block) throws CharacterCodingException {
+        int maxChars = (int) Math.ceil(block.remaining() * (double) decoder.maxCharsPerByte());
+        if (!reuse || chars.length < maxChars) {
+            chars = new char[reuse ? Math.max(maxChars, chars.length * 2) : maxChars];
+            view = CharBuffer.wrap(chars);
+        }
+
+        if (utf8Decoder != null) {
+            // The ASCII fast path, UTF-8 and US-ASCII never need more chars than bytes
+            charPosition = 0;
+            charLimit = utf8Decoder.decode(block, chars, 0, true);
+            return;
+        }
+
+        // Every block holds whole lines, so it is decoded on its own from a fresh decoder state
+        CharBuffer out = CharBuffer.wrap(chars);
+        decoder.reset();
+        CoderResult result = decoder.decode(block, out, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        result = decoder.flush(out);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+
+        charPosition = 0;
+        charLimit = out.position();
+    }
+
+    @Override
+    public Spliterator<CharSequence> trySplit() {
+        long remaining = end - position;
+        if (reuse || remaining < minSplitSize * 2) {
+            return null;
+        }
+
+        try {
+            long lineStart = nextLineStart(position + remaining / 2);
+            if (lineStart < 0) {
+                return null;
+            }
+
+            // The prefix is returned, as ORDERED requires, with what this one has already read
+            LineSpliterator prefix = new LineSpliterator(fileChannel, position, lineStart, charset, false,
+                    minSplitSize);
+            prefix.bytes = bytes;
+            prefix.chars = chars;
+            prefix.charPosition = charPosition;
+            prefix.charLimit = charLimit;
+
+            bytes = null;
+            chars = new char[0];
+            charPosition = 0;
+            charLimit = 0;
+            position = lineStart;
+            return prefix;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the offset following the first line feed from the given offset, or -1 if there is none in the range.
+     */
+    private long nextLineStart(long from) throws IOException {
+        ByteBuffer scan = ByteBuffer.allocate(8 * 1024);
+        for (long offset = from; offset < end - 1; ) {
+            scan.clear().limit((int) Math.min(scan.capacity(), end - 1 - offset));
+            int bytesRead = fileChannel.read(scan, offset);
+            if (bytesRead <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < bytesRead; i++) {
+                if (scan.get(i) == LINE_FEED) {
+                    return offset + i + 1;
+                }
+            }
+            offset += bytesRead;
+        }
+        return -1;
+    }
+
+    @Override
+    public long estimateSize() {
+        // The bytes left, an upper bound of the lines left
+        return end - position + (charLimit - charPosition);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.io;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Reads the objects written by an {@link ObjectWriter} lazily, one at a time, as an Iterator.
+ * <p>
+ * Only the next object is decoded, so a stream of any length is read in constant memory. Since Iterator methods cannot
+ * throw checked exceptions, a read error is thrown as an UncheckedIOException. Closing the reader closes the
+ * underlying input.
+ *
+ * @see Codec#newReader
+ */
+public interface ObjectReader<T> extends Iterator<T>, Closeable {
+}
@@ -0,0 +1,28 @@
+package com.example.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Writes many objects to one stream, read back by an {@link ObjectReader} of the same codec and type.
+ * <p>
+ * The per-stream overhead, such as a header or class descriptors, is written once instead of once per object, and
+ * the writer reuses its buffers from one object to the next. Closing the writer ends the stream and closes the
+ * underlying output.
+ *
+ * @see Codec#newWriter
+ */
+public interface ObjectWriter<T> extends Closeable, Flushable {
+
+    /**
+     * Appends the object, which must not be null, to the stream.
+     */
+    void write(T object) throws IOException;
+
+    default void writeAll(Iterable<? extends T> objects) throws IOException {
+        for (T object : objects) {
+            write(object);
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.example.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Concatenates sources like a SequenceInputStream, but opens and reads the next ones ahead, in the background.
+ * <p>
+ * A SequenceInputStream opens a source once the previous one is exhausted, so reading slow sources, e.g. the parts of
+ * a chunked upload, takes the sum of their times. Here up to {@code prefetch} sources, the current one included, are
+ * opened and read concurrently on the executor, each one into its own bounded buffer: reading all of them takes
+ * about as long as the slowest one, as long as their buffers can hold what is read ahead. A source whose buffer is
+ * full waits for the reader to reach it. The bytes are still returned in the order of the sources.
+ * <p>
+ * The buffer of a source is made of chunks of at most {@link #CHUNK_SIZE} bytes, handed over to the reader as they are
+ * filled and back to the source once read, so nothing is allocated once the buffers exist. {@link #transferTo} writes
+ * the chunks straight to the output stream.
+ * <p>
+ * The stream must be read by one thread at a time, and closed: closing it stops the reads in the background and
+ * closes the sources.
+ */
+public class PrefetchingSequenceInputStream extends InputStream {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(PrefetchingSequenceInputStream.class);
+
+    /**
+     * Marks the end of a source in its queue of chunks.
+     */
+    private static final Chunk END = new Chunk(new byte[0], 0, null);
+
+    private final List<? extends Callable<? extends InputStream>> sources;
+    private final int prefetch;
+    private final int bufferSize;
+    private final Executor executor;
+    private final Source[] started;
+
+    // The source being read, the number of sources started and the chunk being read
+    private int index;
+    private int startedCount;
+    private Chunk current;
+    private int offset;
+    private IOException failure;
+    private volatile boolean closed;
+
+    /**
+     * @param sources    Open the sources, in order, on the executor. A source is only opened when it is started.
+     * @param prefetch   The maximal number of sources read at a time, the current one included.
+     * @param bufferSize The maximal number of bytes read ahead per source.
+     * @param executor   Runs the reads of the sources, one task per source for as long as it is read.
+     */
+    public PrefetchingSequenceInputStream(List<? extends Callable<? extends InputStream>> sources, int prefetch,
+                                          int bufferSize, Executor executor) {
+        if (prefetch <= 0)
+            throw new IllegalArgumentException("Prefetch must be a positive value");
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Buffer size must be a positive value");
+        this.sources = List.copyOf(sources);
+        this.prefetch = prefetch;
+        this.bufferSize = bufferSize;
+        this.executor = Objects.requireNonNull(executor, "Executor cannot be null");
+        this.started = new Source[this.sources.size()];
+        startSources();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        return current.bytes[offset++] & 0xFF;
+    }
+
+    /**
+     * Reads the bytes of the current chunk, and of the next ones as long as they are already read ahead.
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+
+        int total = 0;
+        do {
+            int count = Math.min(len - total, current.length - offset);
+            System.arraycopy(current.bytes, offset, b, off + total, count);
+            offset += count;
+            total += count;
+        } while (total < len && nextChunkReady());
+        return total;
+    }
+
+    /**
+     * Writes every remaining byte to the output stream, chunk by chunk, without copying them.
+     */
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        Objects.requireNonNull(out, "Output stream cannot be null");
+        long transferred = 0;
+        while (nextChunk()) {
+            int count = current.length - offset;
+            out.write(current.bytes, offset, count);
+            offset += count;
+            transferred += count;
+        }
+        return transferred;
+    }
+
+    /**
+     * Returns the bytes left in the current chunk, which can be read without blocking.
+     */
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return current == null ? 0 : current.length - offset;
+    }
+
+    /**
+     * Stops the reads in the background and closes the sources. Sources not started yet are not opened, except the
+     * ones added already open, which are closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current = null;
+
+        IOException closeFailure = null;
+        for (int i = index; i < sources.size(); i++) {
+            try {
+                if (started[i] != null) {
+                    started[i].close();
+                } else if (sources.get(i) instanceof Closeable closeable) {
+                    closeable.close();
+                }
+            } catch (IOException e) {
+                logger.info("Exception during close: {} on input data: {}", e.getMessage(), this);
+                if (closeFailure == null) {
+                    closeFailure = e;
+                } else {
+                    closeFailure.addSuppressed(e);
+                }
+            }
+            started[i] = null;
+        }
+        if (closeFailure != null) {
+            throw closeFailure;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PrefetchingSequenceInputStream{sources=" + sources.size() + ", index=" + index + ", prefetch="
+                + prefetch + ", bufferSize=" + bufferSize + "}";
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+
+    /**
+     * Starts the sources up to {@code prefetch} sources from the current one.
+     */
+    private void startSources() {
+        while (startedCount < sources.size() && startedCount < index + prefetch) {
+            Source source = new Source(sources.get(startedCount));
+            started[startedCount++] = source;
+            executor.execute(source);
+        }
+    }
+
+    /**
+     * Makes the current chunk one with bytes left to read, waiting for the current source if needed.
+     *
+     * @return false at the end of the last source.
+     */
+    private boolean nextChunk() throws IOException {
+        ensureOpen();
+        if (failure != null) {
+            throw failure;
+        }
+        while (current == null || offset == current.length) {
+            if (!advance(true)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the current chunk one with bytes left to read, only if it was already read ahead.
+     */
+    private boolean nextChunkReady() throws IOException {
+        while (current == null || offset == current.length) {
+            if (!advance(false)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Recycles the current chunk and takes the next one of the current source, or moves on to the next source.
+     *
+     * @param wait True to wait for the next chunk, false to only take it if it is ready.
+     * @return false if there is no next chunk, yet or at all.
+     */
+    private boolean advance(boolean wait) throws IOException {
+        if (index == sources.size()) {
+            return false;
+        }
+        Source source = started[index];
+        if (current != null) {
+            source.recycle(current.bytes);
+            current = null;
+        }
+
+        Chunk chunk;
+        try {
+            chunk = wait ? source.filled.take() : source.filled.poll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for source " + index);
+        }
+        if (chunk == null) {
+            return false;
+        }
+
+        if (chunk == END) {
+            // The buffers of the source are released, and the next source gets started
+            started[index++] = null;
+            startSources();
+            return true;
+        }
+        if (chunk.error != null) {
+            logger.info("Exception during read: {} on input data: {}", chunk.error.getMessage(), this);
+            failure = chunk.error instanceof IOException ioException
+                    ? ioException : new IOException("Source " + index + " could not be read", chunk.error);
+            throw failure;
+        }
+
+        current = chunk;
+        offset = 0;
+        return true;
+    }
+
+    /**
+     * Bytes read from a source, or the error that ended it.
+     */
+    private record Chunk(byte[] bytes, int length, Exception error) {
+    }
+
+    /**
+     * Reads one source into its buffer, on the executor.
+     * <p>
+     * The chunks are taken from the free queue, filled and put in the filled queue, so at most
+     * {@code bufferSize} bytes are held for the source: once they are all filled the task waits for the reader to
+     * recycle one. Closing puts an empty array in the free queue to wake the task up.
+     */
+    private final class Source implements Runnable, Closeable {
+
+        private final Callable<? extends InputStream> opener;
+        private final BlockingQueue<Chunk> filled = new LinkedBlockingQueue<>();
+        private final BlockingQueue<byte[]> free = new LinkedBlockingQueue<>();
+        private final int chunkSize = Math.min(CHUNK_SIZE, bufferSize);
+        private long allocatedBytes;
+        private volatile InputStream inputStream;
+        private volatile boolean sourceClosed;
+
+        Source(Callable<? extends InputStream> opener) {
+            this.opener = opener;
+        }
+
+        @Override
+        public void run() {
+            InputStream in = null;
+            try {
+                in = opener.call();
+                inputStream = in;
+                // Closed while it was being opened
+                if (sourceClosed) {
+                    return;
+                }
+
+                while (true) {
+                    byte[] bytes = takeBuffer();
+                    if (bytes == null) {
+                        return;
+                    }
+                    int length = fill(in, bytes);
+                    if (length > 0) {
+                        filled.add(new Chunk(bytes, length, null));
+                    } else {
+                        free.add(bytes);
+                    }
+                    if (length < 0) {
+                        filled.add(END);
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                if (!sourceClosed) {
+                    filled.add(new Chunk(null, 0, e));
+                }
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        logger.info("Exception during close: {} on input data: {}", e.getMessage(),
+                                PrefetchingSequenceInputStream.this);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns a free chunk, allocated as long as the buffer of the source is not full, or null once closed. The
+         * last chunk allocated is smaller when the buffer size is not a multiple of the chunk size.
+         */
+        private byte[] takeBuffer() throws InterruptedException {
+            byte[] bytes = free.poll();
+            if (bytes == null && allocatedBytes < bufferSize) {
+                int length = (int) Math.min(chunkSize, bufferSize - allocatedBytes);
+                allocatedBytes += length;
+                return new byte[length];
+            }
+            if (bytes == null) {
+                bytes = free.take();
+            }
+            return sourceClosed ? null : bytes;
+        }
+
+        /**
+         * Reads into the chunk until it is full, or until the source has nothing more available at once, so the
+         * bytes of a slow source are handed over as they come.
+         *
+         * @return The number of bytes read, or -1 at the end of the source with nothing read.
+         */
+        private int fill(InputStream in, byte[] bytes) throws IOException {
+            int length = 0;
+            while (length < bytes.length) {
+                int bytesRead = in.read(bytes, length, bytes.length - length);
+                if (bytesRead < 0) {
+                    // The chunk read so far comes first, the end is found again by the next fill
+                    return length == 0 ? -1 : length;
+                }
+                length += bytesRead;
+                if (length > 0 && in.available() == 0) {
+                    break;
+                }
+            }
+            return length;
+        }
+
+        void recycle(byte[] bytes) {
+            free.add(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            sourceClosed = true;
+            free.add(new byte[0]);
+            InputStream in = inputStream;
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+}
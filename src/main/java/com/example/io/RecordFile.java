@@ -0,0 +1,447 @@
+package com.example.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A file of rows with a fixed set of typed columns, stored column by column so that any row can be read directly and
+ * a scan of one column reads only the bytes of that column.
+ * <p>
+ * The file starts with a header holding the schema, preceded by its length. The rows follow in pages of
+ * {@link #ROWS_PER_PAGE} rows, a page holding the values of one column for those rows, fixed-width and big-endian: 4
+ * bytes for INT, 8 for LONG and DOUBLE. A STRING value is the 4-byte id of the string in the dictionary of its
+ * column, -1 for null, and the dictionaries, every distinct string once, follow the pages. The file ends with a
+ * footer indexing the offsets of the pages and dictionaries, and the offset of the footer itself.
+ * <p>
+ * The file is memory mapped when it is opened, which touches none of its bytes: a read of row N only faults in the
+ * page of each column read, and a scan of a column only the pages of that column. Unlike a stream of DataOutputStream
+ * rows, nothing before row N is decoded to find it. The pages are slices of a few windows of {@link #WINDOW_SIZE}
+ * bytes, not mappings of their own, so a file of millions of pages stays far below the limit of mappings of a process
+ * (vm.max_map_count on Linux, 65530 by default).
+ * <p>
+ * Usage Example:
+ * ```java
+ * RecordFile.Schema schema = new RecordFile.Schema()
+ * .addInt("EmployeeID")
+ * .addString("Name")
+ * .addDouble("Salary");
+ * <p>
+ * try (RecordFileWriter writer = RecordFile.create(path, schema)) {
+ * writer.writeInt(1).writeString("John Doe").writeDouble(50000.0);
+ * }
+ * <p>
+ * try (RecordFile file = RecordFile.open(path)) {
+ * int salary = file.getSchema().indexOf("Salary");
+ * double total = file.sumDouble(salary);
+ * String name = file.getString(42, file.getSchema().indexOf("Name"));
+ * }
+ * ```
+ */
+public final class RecordFile implements Closeable {
+
+    /**
+     * The first and last 4 bytes of a record file: "RCF1".
+     */
+    static final int MAGIC = 0x52434631;
+
+    /**
+     * The number of rows of a page. A page of a LONG or DOUBLE column is 512 KB.
+     */
+    static final int ROWS_PER_PAGE = 64 * 1024;
+
+    /**
+     * The size of the trailer: the offset of the footer and the magic.
+     */
+    static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    /**
+     * The size of the mappings the pages and dictionaries are sliced from, unless one of them is larger.
+     */
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The type of the values of a column, and their width in a page.
+     */
+    public enum ColumnType {
+        INT(Integer.BYTES),
+        LONG(Long.BYTES),
+        DOUBLE(Long.BYTES),
+        STRING(Integer.BYTES);
+
+        private final int width;
+
+        ColumnType(int width) {
+            this.width = width;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+    }
+
+    /**
+     * The names and types of the columns of a record file, in order.
+     */
+    public static final class Schema {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<ColumnType> types = new ArrayList<>();
+
+        public Schema addInt(String name) {
+            return addColumn(name, ColumnType.INT);
+        }
+
+        public Schema addLong(String name) {
+            return addColumn(name, ColumnType.LONG);
+        }
+
+        public Schema addDouble(String name) {
+            return addColumn(name, ColumnType.DOUBLE);
+        }
+
+        public Schema addString(String name) {
+            return addColumn(name, ColumnType.STRING);
+        }
+
+        public Schema addColumn(String name, ColumnType type) {
+            Objects.requireNonNull(name, "Name cannot be null");
+            Objects.requireNonNull(type, "Type cannot be null");
+            if (names.contains(name))
+                throw new IllegalArgumentException("Duplicate column: " + name);
+            names.add(name);
+            types.add(type);
+            return this;
+        }
+
+        public int getColumnCount() {
+            return names.size();
+        }
+
+        public String getName(int column) {
+            return names.get(column);
+        }
+
+        public ColumnType getType(int column) {
+            return types.get(column);
+        }
+
+        /**
+         * Returns the index of the column with the given name.
+         *
+         * @throws IllegalArgumentException If there is no such column.
+         */
+        public int indexOf(String name) {
+            int column = names.indexOf(name);
+            if (column < 0)
+                throw new IllegalArgumentException("No column " + name + " in " + names);
+            return column;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("Schema[");
+            for (int i = 0; i < names.size(); i++) {
+                builder.append(i == 0 ? "" : ", ").append(names.get(i)).append(' ').append(types.get(i));
+            }
+            return builder.append(']').toString();
+        }
+    }
+
+    private final Path path;
+    private final Schema schema;
+    private final long rowCount;
+    private final int rowsPerPage;
+
+    /**
+     * The pages of every column, by column and page index.
+     */
+    private final ByteBuffer[][] pages;
+
+    /**
+     * The dictionary of every STRING column, null for the other columns: the string count, the offsets of the
+     * strings plus one for the end, then the UTF-8 bytes of the strings.
+     */
+    private final ByteBuffer[] dictionaries;
+
+    private RecordFile(Path path, Schema schema, long rowCount, int rowsPerPage, ByteBuffer[][] pages,
+                       ByteBuffer[] dictionaries) {
+        this.path = path;
+        this.schema = schema;
+        this.rowCount = rowCount;
+        this.rowsPerPage = rowsPerPage;
+        this.pages = pages;
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Returns a writer of a new record file with the given columns, replacing any existing file.
+     */
+    public static RecordFileWriter create(Path path, Schema schema) throws IOException {
+        return new RecordFileWriter(path, schema, ROWS_PER_PAGE);
+    }
+
+    /**
+     * Opens a record file and maps its pages and dictionaries. The mappings stay valid after the file is closed.
+     */
+    public static RecordFile open(Path path) throws IOException {
+        return open(path, WINDOW_SIZE);
+    }
+
+    static RecordFile open(Path path, int windowSize) throws IOException {
+        if (windowSize <= 0)
+            throw new IllegalArgumentException("Window size must be a positive value");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Integer.BYTES + TRAILER_SIZE)
+                throw new StreamCorruptedException("Not a record file: " + path);
+
+            ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            long footerOffset = trailer.getLong();
+            long footerLength = size - TRAILER_SIZE - footerOffset;
+            if (trailer.getInt() != MAGIC || footerLength < 0 || footerLength > Integer.MAX_VALUE)
+                throw new StreamCorruptedException("Not a record file: " + path);
+            ByteBuffer footer = read(channel, footerOffset, (int) footerLength);
+
+            ByteBuffer prefix = read(channel, 0, Integer.BYTES * 2);
+            int headerLength = prefix.getInt(Integer.BYTES);
+            if (prefix.getInt() != MAGIC || headerLength < 0 || headerLength > footerOffset)
+                throw new StreamCorruptedException("Not a record file: " + path);
+            ByteBuffer header = read(channel, Integer.BYTES * 2, headerLength);
+            Schema schema = new Schema();
+            int columnCount = header.getShort();
+            for (int i = 0; i < columnCount; i++) {
+                int ordinal = header.get();
+                if (ordinal < 0 || ordinal >= ColumnType.values().length)
+                    throw new StreamCorruptedException("Invalid column type: " + ordinal);
+                int nameLength = header.getShort();
+                if (nameLength < 0)
+                    throw new StreamCorruptedException("Invalid column name length: " + nameLength);
+                byte[] name = new byte[nameLength];
+                header.get(name);
+                schema.addColumn(new String(name, StandardCharsets.UTF_8), ColumnType.values()[ordinal]);
+            }
+            int rowsPerPage = header.getInt();
+
+            long rowCount = footer.getLong();
+            int pageCount = footer.getInt();
+            if (rowsPerPage <= 0 || rowCount < 0 || pageCount != (rowCount + rowsPerPage - 1) / rowsPerPage)
+                throw new StreamCorruptedException("Invalid row count: " + rowCount);
+
+            Windows windows = new Windows(channel, footerOffset, windowSize);
+            ByteBuffer[][] pages = new ByteBuffer[columnCount][pageCount];
+            for (int page = 0; page < pageCount; page++) {
+                int rows = (int) Math.min(rowsPerPage, rowCount - (long) page * rowsPerPage);
+                for (int column = 0; column < columnCount; column++) {
+                    long offset = footer.getLong();
+                    pages[column][page] = windows.slice(offset, (long) rows * schema.getType(column).getWidth());
+                }
+            }
+            ByteBuffer[] dictionaries = new ByteBuffer[columnCount];
+            for (int column = 0; column < columnCount; column++) {
+                long offset = footer.getLong();
+                long length = footer.getLong();
+                if (schema.getType(column) == ColumnType.STRING) {
+                    dictionaries[column] = windows.slice(offset, length);
+                }
+            }
+            return new RecordFile(path, schema, rowCount, rowsPerPage, pages, dictionaries);
+        } catch (BufferUnderflowException e) {
+            throw new StreamCorruptedException("Truncated record file: " + path);
+        }
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getInt(long row, int column) {
+        return page(row, column, ColumnType.INT).getInt(index(row) * Integer.BYTES);
+    }
+
+    public long getLong(long row, int column) {
+        return page(row, column, ColumnType.LONG).getLong(index(row) * Long.BYTES);
+    }
+
+    public double getDouble(long row, int column) {
+        return page(row, column, ColumnType.DOUBLE).getDouble(index(row) * Long.BYTES);
+    }
+
+    /**
+     * Returns the id of the string of a row in the dictionary of its column, or -1 for null. Two rows hold the same
+     * string if they hold the same id, so rows can be compared and grouped without decoding the strings.
+     */
+    public int getStringId(long row, int column) {
+        return page(row, column, ColumnType.STRING).getInt(index(row) * Integer.BYTES);
+    }
+
+    public String getString(long row, int column) {
+        int id = getStringId(row, column);
+        return id < 0 ? null : getDictionaryString(column, id);
+    }
+
+    /**
+     * Returns the number of distinct strings of a STRING column.
+     */
+    public int getDictionarySize(int column) {
+        return dictionary(column).getInt(0);
+    }
+
+    /**
+     * Returns the string with the given id in the dictionary of a STRING column.
+     */
+    public String getDictionaryString(int column, int id) {
+        ByteBuffer dictionary = dictionary(column);
+        int count = dictionary.getInt(0);
+        Objects.checkIndex(id, count);
+        int start = dictionary.getInt(Integer.BYTES * (id + 1));
+        int end = dictionary.getInt(Integer.BYTES * (id + 2));
+        byte[] bytes = new byte[end - start];
+        dictionary.get(Integer.BYTES * (count + 2) + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Passes the values of an INT column to the consumer in row order, reading only the pages of that column.
+     */
+    public void forEachInt(int column, IntConsumer consumer) {
+        for (ByteBuffer page : pages(column, ColumnType.INT)) {
+            for (int position = 0, limit = page.limit(); position < limit; position += Integer.BYTES) {
+                consumer.accept(page.getInt(position));
+            }
+        }
+    }
+
+    public void forEachLong(int column, LongConsumer consumer) {
+        for (ByteBuffer page : pages(column, ColumnType.LONG)) {
+            for (int position = 0, limit = page.limit(); position < limit; position += Long.BYTES) {
+                consumer.accept(page.getLong(position));
+            }
+        }
+    }
+
+    public void forEachDouble(int column, DoubleConsumer consumer) {
+        for (ByteBuffer page : pages(column, ColumnType.DOUBLE)) {
+            for (int position = 0, limit = page.limit(); position < limit; position += Long.BYTES) {
+                consumer.accept(page.getDouble(position));
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of a DOUBLE column, reading only the pages of that column.
+     */
+    public double sumDouble(int column) {
+        double sum = 0;
+        for (ByteBuffer page : pages(column, ColumnType.DOUBLE)) {
+            for (int position = 0, limit = page.limit(); position < limit; position += Long.BYTES) {
+                sum += page.getDouble(position);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Does nothing beyond dropping the references to the mappings: a mapping is released when it is garbage
+     * collected, and the file channel was closed by {@link #open}.
+     */
+    @Override
+    public void close() {
+        for (ByteBuffer[] columnPages : pages) {
+            Arrays.fill(columnPages, null);
+        }
+        Arrays.fill(dictionaries, null);
+    }
+
+    @Override
+    public String toString() {
+        return "RecordFile{" +
+                "path=" + path +
+                ", schema=" + schema +
+                ", rowCount=" + rowCount +
+                '}';
+    }
+
+    private ByteBuffer page(long row, int column, ColumnType type) {
+        Objects.checkIndex(row, rowCount);
+        return pages(column, type)[(int) (row / rowsPerPage)];
+    }
+
+    private int index(long row) {
+        return (int) (row % rowsPerPage);
+    }
+
+    private ByteBuffer[] pages(int column, ColumnType type) {
+        if (schema.getType(column) != type)
+            throw new IllegalArgumentException("Column " + schema.getName(column) + " is " + schema.getType(column)
+                    + ", not " + type);
+        return pages[column];
+    }
+
+    private ByteBuffer dictionary(int column) {
+        pages(column, ColumnType.STRING);
+        return dictionaries[column];
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new StreamCorruptedException("Truncated record file");
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Maps the regions of the file through windows: a region is a slice of the current window when it fits in it, else
+     * a new window is mapped from the start of the region. The regions are listed in file order, so each window is
+     * mapped once.
+     */
+    private static final class Windows {
+
+        private final FileChannel channel;
+        private final long limit;
+        private final int windowSize;
+
+        private MappedByteBuffer window;
+        private long windowOffset;
+
+        /**
+         * @param limit The end of the regions, the offset of the footer.
+         */
+        Windows(FileChannel channel, long limit, int windowSize) {
+            this.channel = channel;
+            this.limit = limit;
+            this.windowSize = windowSize;
+        }
+
+        ByteBuffer slice(long offset, long length) throws IOException {
+            if (offset < 0 || length < 0 || length > Integer.MAX_VALUE || offset > limit - length)
+                throw new StreamCorruptedException("Invalid region: " + offset + ", " + length);
+            if (window == null || offset < windowOffset || offset + length > windowOffset + window.capacity()) {
+                windowOffset = offset;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(Math.max(windowSize, length), limit - offset));
+            }
+            return window.slice((int) (offset - windowOffset), (int) length);
+        }
+    }
+}
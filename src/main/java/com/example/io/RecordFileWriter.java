@@ -0,0 +1,240 @@
+package com.example.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes the rows of a {@link RecordFile}, value by value in column order like a DataOutputStream: the row ends with
+ * the value of its last column.
+ * <p>
+ * The values of the current page are kept per column and written page by page, the distinct strings of every STRING
+ * column are kept until {@link #close()} writes the dictionaries and the footer. The file is only readable once the
+ * writer is closed.
+ */
+public final class RecordFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final RecordFile.Schema schema;
+    private final OutputStream outputStream;
+
+    private final ByteBuffer[] pages;
+    private final List<Map<String, Integer>> dictionaryIds = new ArrayList<>();
+    private final BinaryOutput[] dictionaryOffsets;
+    private final BinaryOutput[] dictionaryBytes;
+
+    /**
+     * The offsets of the pages written, by page index then column.
+     */
+    private final List<long[]> pageOffsets = new ArrayList<>();
+
+    private long position;
+    private long rowCount;
+    private int column;
+    private boolean closed;
+
+    RecordFileWriter(Path path, RecordFile.Schema schema, int rowsPerPage) throws IOException {
+        Objects.requireNonNull(schema, "Schema cannot be null");
+        if (schema.getColumnCount() == 0 || schema.getColumnCount() > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Column count must be between 1 and " + Short.MAX_VALUE);
+        if (rowsPerPage <= 0)
+            throw new IllegalArgumentException("Rows per page must be a positive value");
+        this.schema = schema;
+
+        int columnCount = schema.getColumnCount();
+        this.pages = new ByteBuffer[columnCount];
+        this.dictionaryOffsets = new BinaryOutput[columnCount];
+        this.dictionaryBytes = new BinaryOutput[columnCount];
+        BinaryOutput header = new BinaryOutput(256);
+        header.writeShort(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            RecordFile.ColumnType type = schema.getType(i);
+            pages[i] = ByteBuffer.allocate(Math.multiplyExact(rowsPerPage, type.getWidth()));
+            dictionaryIds.add(type == RecordFile.ColumnType.STRING ? new HashMap<>() : null);
+            if (type == RecordFile.ColumnType.STRING) {
+                dictionaryOffsets[i] = new BinaryOutput(256);
+                dictionaryOffsets[i].writeInt(0);
+                dictionaryBytes[i] = new BinaryOutput(1024);
+            }
+
+            byte[] name = schema.getName(i).getBytes(StandardCharsets.UTF_8);
+            if (name.length > Short.MAX_VALUE)
+                throw new IllegalArgumentException("Column name too long: " + schema.getName(i));
+            header.writeByte(type.ordinal());
+            header.writeShort(name.length);
+            header.write(name, 0, name.length);
+        }
+        header.writeInt(rowsPerPage);
+        // The pages start 8-byte aligned, so are their LONG and DOUBLE values
+        while (header.size() % Long.BYTES != 0) {
+            header.writeByte(0);
+        }
+
+        this.outputStream = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE);
+        BinaryOutput prefix = new BinaryOutput(Integer.BYTES * 2);
+        prefix.writeInt(RecordFile.MAGIC);
+        prefix.writeInt(header.size());
+        write(prefix);
+        write(header);
+    }
+
+    public RecordFileWriter writeInt(int value) throws IOException {
+        page(RecordFile.ColumnType.INT).putInt(value);
+        return next();
+    }
+
+    public RecordFileWriter writeLong(long value) throws IOException {
+        page(RecordFile.ColumnType.LONG).putLong(value);
+        return next();
+    }
+
+    public RecordFileWriter writeDouble(double value) throws IOException {
+        page(RecordFile.ColumnType.DOUBLE).putDouble(value);
+        return next();
+    }
+
+    /**
+     * Writes the id of the string in the dictionary of the column, adding it on its first occurrence.
+     */
+    public RecordFileWriter writeString(String value) throws IOException {
+        ByteBuffer page = page(RecordFile.ColumnType.STRING);
+        if (value == null) {
+            page.putInt(-1);
+            return next();
+        }
+
+        Map<String, Integer> ids = dictionaryIds.get(column);
+        Integer id = ids.get(value);
+        if (id == null) {
+            BinaryOutput bytes = dictionaryBytes[column];
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > Integer.MAX_VALUE - 8 - bytes.size())
+                throw new IOException("Dictionary of column " + schema.getName(column) + " exceeds 2 GB");
+            bytes.write(encoded, 0, encoded.length);
+            dictionaryOffsets[column].writeInt(bytes.size());
+            id = ids.size();
+            ids.put(value, id);
+        }
+        page.putInt(id);
+        return next();
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Writes the last page, the dictionaries, the footer and the trailer, then closes the file.
+     *
+     * @throws IllegalStateException If the last row is incomplete, the file is closed anyway.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+
+        try (outputStream) {
+            if (column != 0)
+                throw new IllegalStateException("Incomplete row: " + column + " of " + schema.getColumnCount()
+                        + " values written");
+            if (pages[0].position() > 0) {
+                writePages();
+            }
+
+            int columnCount = schema.getColumnCount();
+            long[] dictionaryPositions = new long[columnCount];
+            long[] dictionaryLengths = new long[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                if (dictionaryBytes[i] == null)
+                    continue;
+                dictionaryPositions[i] = position;
+                BinaryOutput count = new BinaryOutput(Integer.BYTES);
+                count.writeInt(dictionaryIds.get(i).size());
+                write(count);
+                write(dictionaryOffsets[i]);
+                write(dictionaryBytes[i]);
+                dictionaryLengths[i] = position - dictionaryPositions[i];
+            }
+
+            long footerOffset = position;
+            BinaryOutput footer = new BinaryOutput(64 + pageOffsets.size() * columnCount * Long.BYTES);
+            footer.writeLong(rowCount);
+            footer.writeInt(pageOffsets.size());
+            for (long[] offsets : pageOffsets) {
+                for (long offset : offsets) {
+                    footer.writeLong(offset);
+                }
+            }
+            for (int i = 0; i < columnCount; i++) {
+                footer.writeLong(dictionaryPositions[i]);
+                footer.writeLong(dictionaryLengths[i]);
+            }
+            footer.writeLong(footerOffset);
+            footer.writeInt(RecordFile.MAGIC);
+            write(footer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RecordFileWriter{" +
+                "schema=" + schema +
+                ", rowCount=" + rowCount +
+                '}';
+    }
+
+    private ByteBuffer page(RecordFile.ColumnType type) {
+        if (closed)
+            throw new IllegalStateException("Writer is closed");
+        if (schema.getType(column) != type)
+            throw new IllegalArgumentException("Column " + schema.getName(column) + " is "
+                    + schema.getType(column) + ", not " + type);
+        return pages[column];
+    }
+
+    private RecordFileWriter next() throws IOException {
+        if (++column == schema.getColumnCount()) {
+            column = 0;
+            rowCount++;
+            if (!pages[0].hasRemaining()) {
+                writePages();
+            }
+        }
+        return this;
+    }
+
+    private void writePages() throws IOException {
+        long[] offsets = new long[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            offsets[i] = position;
+            ByteBuffer page = pages[i];
+            outputStream.write(page.array(), 0, page.position());
+            position += page.position();
+            page.clear();
+            // INT and STRING pages of an odd number of values need padding: all of them if rowsPerPage is odd, else
+            // only a last page of an odd number of rows
+            while (position % Long.BYTES != 0) {
+                outputStream.write(0);
+                position++;
+            }
+        }
+        pageOffsets.add(offsets);
+    }
+
+    private void write(BinaryOutput output) throws IOException {
+        output.writeTo(outputStream);
+        position += output.size();
+    }
+}
@@ -4,6 +4,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * The Serialize class provides utility methods for object serialization and deserialization.
@@ -22,11 +26,43 @@ import java.io.*;
  * // Deserialization
  * MyObjectType deserializedObject = Serialize.deserialize(serializedData);
  * ```
+ * <p>
+ * The serialization mechanism is pluggable: the overloads taking a {@link Codec} use it instead, e.g.
+ * {@link #BINARY}, a compact binary format for records and plain classes which falls back to Java serialization for
+ * the other objects.
+ * ```java
+ * byte[] serializedData = Serialize.serialize(myRecord, Serialize.BINARY);
+ * MyRecord deserializedObject = Serialize.deserialize(serializedData, MyRecord.class, Serialize.BINARY);
+ * ```
+ * <p>
+ * Batches of objects are written to one stream, with the per-stream overhead written once, and read back lazily:
+ * ```java
+ * try (ObjectWriter<MyRecord> writer = Serialize.writer(outputStream, MyRecord.class, Serialize.BINARY)) {
+ * writer.writeAll(records);
+ * }
+ * try (ObjectReader<MyRecord> reader = Serialize.reader(inputStream, MyRecord.class, Serialize.BINARY)) {
+ * reader.forEachRemaining(consumer);
+ * }
+ * ```
+ * <p>
+ * Records of primitives have a {@link FixedLayout}: {@link #flyweight} reads their components in place, e.g. from a
+ * mapped file, without deserializing the records.
  */
 public class Serialize {
 
     private static final Logger logger = LoggerFactory.getLogger(Serialize.class);
 
+    /**
+     * Java's built-in serialization, used by the methods without a codec.
+     */
+    public static final Codec JDK = new JdkCodec();
+
+    /**
+     * The binary codec, falling back to Java serialization for the classes it does not support. The fallback only
+     * accepts the classes the requested type leads to, see {@link JdkCodec#forType}.
+     */
+    public static final Codec BINARY = new BinaryCodec(JdkCodec.filteredByType());
+
     public static <T> byte[] serialize(T object) throws IOException {
         try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
              ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
@@ -51,4 +87,67 @@ public class Serialize {
             throw e;
         }
     }
+
+    public static <T> byte[] serialize(T object, Codec codec) throws IOException {
+        try {
+            return codec.encode(object);
+        } catch (IOException e) {
+            logger.info("Exception during serialization for object: {}", object);
+            throw e;
+        }
+    }
+
+    public static <T> T deserialize(byte[] byteArray, Class<T> type, Codec codec)
+            throws IOException, ClassNotFoundException {
+        try {
+            return codec.decode(byteArray, type);
+        } catch (IOException | ClassNotFoundException e) {
+            logger.info("Exception during deserialization: {}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a writer of many objects to the stream, see {@link Codec#newWriter}.
+     */
+    public static <T> ObjectWriter<T> writer(OutputStream outputStream, Class<T> type, Codec codec)
+            throws IOException {
+        try {
+            return codec.newWriter(outputStream, type);
+        } catch (IOException e) {
+            logger.info("Exception during serialization for type: {}", type);
+            throw e;
+        }
+    }
+
+    public static <T> ObjectWriter<T> writer(WritableByteChannel channel, Class<T> type, Codec codec)
+            throws IOException {
+        return writer(Channels.newOutputStream(channel), type, codec);
+    }
+
+    /**
+     * Returns a lazy reader of the objects written by {@link #writer}, see {@link Codec#newReader}.
+     */
+    public static <T> ObjectReader<T> reader(InputStream inputStream, Class<T> type, Codec codec)
+            throws IOException {
+        try {
+            return codec.newReader(inputStream, type);
+        } catch (IOException e) {
+            logger.info("Exception during deserialization: {}", e.getMessage());
+            throw e;
+        }
+    }
+
+    public static <T> ObjectReader<T> reader(ReadableByteChannel channel, Class<T> type, Codec codec)
+            throws IOException {
+        return reader(Channels.newInputStream(channel), type, codec);
+    }
+
+    /**
+     * Returns a cursor over the records stored in the buffer with their {@link FixedLayout}, e.g. by
+     * {@link FixedLayout#newWriter}, which reads their components without creating the records.
+     */
+    public static <T extends Record> FixedLayout.Flyweight<T> flyweight(ByteBuffer buffer, Class<T> type) {
+        return FixedLayout.of(type).flyweight(buffer);
+    }
 }
@@ -0,0 +1,178 @@
+package com.example.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes UTF-8 or US-ASCII bytes straight into a char[], used by {@link FileReaderCharacterStream} instead of a
+ * CharsetDecoder for these two charsets.
+ * <p>
+ * Most text is ASCII, so the bytes are checked 8 at a time: a long read from the buffer is ASCII when none of its
+ * bytes has the high bit set (SWAR, SIMD within a register), its 8 bytes are then widened to chars with shifts. Only
+ * the bytes of a word that is not ASCII go through the full UTF-8 decoding, one sequence at a time, with the checks
+ * of a CharsetDecoder: overlong forms, surrogates and code points above U+10FFFF are malformed.
+ */
+final class Utf8Decoder {
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final boolean ascii;
+
+    private Utf8Decoder(boolean ascii) {
+        this.ascii = ascii;
+    }
+
+    /**
+     * Returns the decoder of the charset, or null when it is neither UTF-8 nor US-ASCII.
+     */
+    static Utf8Decoder forCharset(Charset charset) {
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            return new Utf8Decoder(false);
+        }
+        if (StandardCharsets.US_ASCII.equals(charset)) {
+            return new Utf8Decoder(true);
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the remaining bytes of the source into the destination, which must have room for as many chars as
+     * there are bytes. The position of the source is moved past the decoded bytes.
+     * <p>
+     * A sequence cut by the end of the source is left in it when more input follows, to be decoded with the next
+     * bytes.
+     *
+     * @param endOfInput True if no bytes follow the source, a cut sequence is malformed then.
+     * @return The number of chars written.
+     * @throws MalformedInputException If the bytes are not valid in the charset, the source is positioned at them.
+     */
+    int decode(ByteBuffer source, char[] destination, int offset, boolean endOfInput) throws MalformedInputException {
+        boolean littleEndian = source.order() == ByteOrder.LITTLE_ENDIAN;
+        int position = source.position();
+        int limit = source.limit();
+        int charPosition = offset;
+
+        try {
+            while (position < limit) {
+                // 8 bytes at a time while they are ASCII
+                if (limit - position >= Long.BYTES) {
+                    long word = source.getLong(position);
+                    long highBits = word & HIGH_BITS;
+                    if (highBits == 0) {
+                        widen(word, littleEndian, destination, charPosition);
+                        position += Long.BYTES;
+                        charPosition += Long.BYTES;
+                        continue;
+                    }
+
+                    // The ASCII bytes ahead of the first one with the high bit set
+                    int asciiBytes = (littleEndian
+                            ? Long.numberOfTrailingZeros(highBits) : Long.numberOfLeadingZeros(highBits)) >>> 3;
+                    for (int i = 0; i < asciiBytes; i++) {
+                        destination[charPosition++] = (char) source.get(position++);
+                    }
+                }
+
+                int lead = source.get(position);
+                if (lead >= 0) {
+                    destination[charPosition++] = (char) lead;
+                    position++;
+                    continue;
+                }
+                if (ascii) {
+                    throw malformed(1);
+                }
+
+                int length = decodeSequence(source, position, limit, lead & 0xFF, destination, charPosition);
+                if (length == 0) {
+                    // A sequence cut by the end of the source
+                    if (endOfInput) {
+                        throw malformed(1);
+                    }
+                    break;
+                }
+                position += length;
+                // A 4 byte sequence is a surrogate pair
+                charPosition += length == 4 ? 2 : 1;
+            }
+        } finally {
+            source.position(position);
+        }
+        return charPosition - offset;
+    }
+
+    private static void widen(long word, boolean littleEndian, char[] destination, int offset) {
+        if (littleEndian) {
+            for (int i = 0; i < Long.BYTES; i++) {
+                destination[offset + i] = (char) ((word >>> (i << 3)) & 0x7F);
+            }
+        } else {
+            for (int i = 0; i < Long.BYTES; i++) {
+                destination[offset + i] = (char) ((word >>> ((Long.BYTES - 1 - i) << 3)) & 0x7F);
+            }
+        }
+    }
+
+    /**
+     * Decodes the multi-byte sequence starting at the given position.
+     *
+     * @return The length of the sequence, or 0 if the source ends before it does.
+     */
+    private static int decodeSequence(ByteBuffer source, int position, int limit, int lead, char[] destination,
+                                      int charPosition) throws MalformedInputException {
+        int length;
+        int codePoint;
+        int minSecond = 0x80;
+        int maxSecond = 0xBF;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            length = 2;
+            codePoint = lead & 0x1F;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            length = 3;
+            codePoint = lead & 0x0F;
+            // Neither overlong nor a surrogate
+            if (lead == 0xE0) {
+                minSecond = 0xA0;
+            } else if (lead == 0xED) {
+                maxSecond = 0x9F;
+            }
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            length = 4;
+            codePoint = lead & 0x07;
+            // Neither overlong nor above U+10FFFF
+            if (lead == 0xF0) {
+                minSecond = 0x90;
+            } else if (lead == 0xF4) {
+                maxSecond = 0x8F;
+            }
+        } else {
+            throw malformed(1);
+        }
+
+        for (int i = 1; i < length; i++) {
+            if (position + i >= limit) {
+                return 0;
+            }
+            int next = source.get(position + i) & 0xFF;
+            if (i == 1 ? next < minSecond || next > maxSecond : (next & 0xC0) != 0x80) {
+                throw malformed(i);
+            }
+            codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+
+        if (length == 4) {
+            destination[charPosition] = Character.highSurrogate(codePoint);
+            destination[charPosition + 1] = Character.lowSurrogate(codePoint);
+        } else {
+            destination[charPosition] = (char) codePoint;
+        }
+        return length;
+    }
+
+    private static MalformedInputException malformed(int length) {
+        return new MalformedInputException(length);
+    }
+}
@@ -0,0 +1,394 @@
+package com.example.nio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks a directory tree on a ForkJoinPool: every directory is listed by its own task, so the subdirectories of a
+ * directory are listed in parallel, and the attributes of the entries are read by the task listing them, on every
+ * core at once instead of one stat after the other on a single thread.
+ * <p>
+ * The attributes are read while the directory is open: when the file system supports SecureDirectoryStream, as on
+ * Linux and macOS, relative to the open directory, without resolving the whole path of every entry again. The filters
+ * are applied in the listing task too: an entry rejected by the matcher is never queued, a directory rejected by the
+ * directory matcher is never listed. The matcher runs on the path alone, before the attributes are read: at the max
+ * depth an entry it rejects costs no stat, above it the entry is still read to find out whether it is a directory.
+ * <p>
+ * The entries are streamed through a bounded queue as they are found: when the consumer is slower than the walk the
+ * tasks wait for it, so walking millions of files holds at most the capacity of the queue in memory, plus a task per
+ * directory found but not listed yet. The entries come in no particular order, and the root itself is not one of
+ * them. Closing the stream stops the walk.
+ * <p>
+ * Usage Example:
+ * ```java
+ * ParallelTreeWalker walker = new ParallelTreeWalker(root)
+ * .setGlob("**.txt")
+ * .setParallelism(16);
+ * <p>
+ * try (Stream<ParallelTreeWalker.Entry> entries = walker.stream()) {
+ * long size = entries.mapToLong(entry -> entry.attributes().size()).sum();
+ * }
+ * ```
+ */
+public class ParallelTreeWalker {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    /**
+     * How long a task waits for room in the queue before checking if the walk was stopped.
+     */
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    /**
+     * A file or directory found by the walk.
+     *
+     * @param depth 1 for the entries of the root, 2 for the entries of its subdirectories, and so on.
+     */
+    public record Entry(Path path, BasicFileAttributes attributes, int depth) {
+    }
+
+    private final Path root;
+    private PathMatcher matcher;
+    private PathMatcher directoryMatcher;
+    private int maxDepth = Integer.MAX_VALUE;
+    private boolean followLinks;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private BiConsumer<Path, IOException> errorHandler;
+
+    public ParallelTreeWalker(Path root) {
+        this.root = Objects.requireNonNull(root, "Root cannot be null");
+    }
+
+    /**
+     * Only the entries whose path relative to the root matches are streamed. The subdirectories are walked anyway,
+     * see {@link #setDirectoryMatcher}. The matcher is called before the attributes of the entry are read, so for
+     * entries deleted since they were listed too. The matchers are called by the threads of the pool, concurrently: an
+     * exception thrown by one of them stops the walk, and the stream rethrows it.
+     */
+    public ParallelTreeWalker setMatcher(PathMatcher matcher) {
+        this.matcher = matcher;
+        return this;
+    }
+
+    /**
+     * Only the entries whose path relative to the root matches the glob are streamed: "*.txt" matches the text files
+     * of the root, "**.txt" those of the whole tree.
+     */
+    public ParallelTreeWalker setGlob(String glob) {
+        return setMatcher(root.getFileSystem().getPathMatcher("glob:" + glob));
+    }
+
+    /**
+     * Only the directories whose path relative to the root matches are listed, the others are skipped with their
+     * whole subtree. An exception thrown by the matcher stops the walk, and the stream rethrows it.
+     */
+    public ParallelTreeWalker setDirectoryMatcher(PathMatcher directoryMatcher) {
+        this.directoryMatcher = directoryMatcher;
+        return this;
+    }
+
+    /**
+     * The depth of the deepest entries streamed, 1 for the entries of the root only.
+     */
+    public ParallelTreeWalker setMaxDepth(int maxDepth) {
+        if (maxDepth <= 0)
+            throw new IllegalArgumentException("Max depth must be a positive value");
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Follows symbolic links to directories. A directory reached by several links, or by a link to one of its
+     * ancestors, is walked once.
+     */
+    public ParallelTreeWalker setFollowLinks(boolean followLinks) {
+        this.followLinks = followLinks;
+        return this;
+    }
+
+    /**
+     * The number of threads listing directories and reading attributes, the number of cores by default. Higher
+     * values help on file systems with a high latency per stat, such as network file systems.
+     */
+    public ParallelTreeWalker setParallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Parallelism must be a positive value");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public ParallelTreeWalker setQueueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0)
+            throw new IllegalArgumentException("Queue capacity must be a positive value");
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Called with the directories that cannot be listed, which are then skipped. The handler is called by the threads
+     * of the pool, concurrently. Without a handler, the stream throws an UncheckedIOException and the walk stops. An
+     * exception thrown by the handler stops the walk too, and the stream rethrows it.
+     */
+    public ParallelTreeWalker setErrorHandler(BiConsumer<Path, IOException> errorHandler) {
+        this.errorHandler = errorHandler;
+        return this;
+    }
+
+    /**
+     * Starts walking the tree on a new pool, and returns the stream of the entries found, to be closed.
+     *
+     * @throws NotDirectoryException If the root is not a directory.
+     */
+    public Stream<Entry> stream() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class, linkOptions());
+        if (!attributes.isDirectory())
+            throw new NotDirectoryException(root.toString());
+
+        Walk walk = new Walk(attributes.fileKey());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(walk,
+                        Spliterator.NONNULL | Spliterator.DISTINCT), false)
+                .onClose(walk::close);
+    }
+
+    @Override
+    public String toString() {
+        return "ParallelTreeWalker{" +
+                "root=" + root +
+                ", maxDepth=" + maxDepth +
+                ", parallelism=" + parallelism +
+                '}';
+    }
+
+    private LinkOption[] linkOptions() {
+        return followLinks ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+    }
+
+    /**
+     * The state of one walk: its pool, its queue, and the iterator over the queue.
+     */
+    private final class Walk implements Iterator<Entry> {
+
+        /**
+         * Queued once every directory is listed.
+         */
+        private final Entry end = new Entry(root, null, 0);
+
+        private final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final LinkOption[] linkOptions = linkOptions();
+
+        /**
+         * The file keys of the directories listed, to detect cycles when following links.
+         */
+        private final Set<Object> visited = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean closed;
+        /**
+         * The first failure of the walk: an IOException without error handler, or what a matcher or the error handler
+         * threw.
+         */
+        private volatile Throwable error;
+        private Entry next;
+        private boolean done;
+
+        Walk(Object rootKey) {
+            if (followLinks && rootKey != null) {
+                visited.add(rootKey);
+            }
+            pool.execute(new DirectoryTask(null, root, 0));
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new UncheckedIOException(new InterruptedIOException("Interrupted while walking " + root));
+                }
+                if (next == end) {
+                    next = null;
+                    done = true;
+                    pool.shutdown();
+                    if (error instanceof IOException e)
+                        throw new UncheckedIOException(e);
+                    if (error instanceof RuntimeException e)
+                        throw e;
+                    if (error instanceof Error e)
+                        throw e;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry entry = next;
+            next = null;
+            return entry;
+        }
+
+        void close() {
+            closed = true;
+            done = true;
+            next = null;
+            pool.shutdownNow();
+        }
+
+        private boolean stopped() {
+            return closed || error != null;
+        }
+
+        private void fail(Path directory, IOException e) {
+            if (errorHandler != null) {
+                errorHandler.accept(directory, e);
+            } else {
+                stop(e);
+            }
+        }
+
+        private void stop(Throwable e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+
+        /**
+         * Waits for room in the queue, unless the walk is stopped.
+         */
+        private void put(Entry entry, boolean last) {
+            try {
+                while (!queue.offer(entry, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // The end is still queued after an error, for the consumer to see it
+                    if (last ? closed : stopped())
+                        return;
+                }
+            } catch (InterruptedException e) {
+                // The pool was shut down by close
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Lists one directory, streams its entries and forks a task per subdirectory. The walk ends when the root
+         * task completes, once every task it forked directly or indirectly did. Never serialized, like any task.
+         */
+        @SuppressWarnings("serial")
+        private final class DirectoryTask extends CountedCompleter<Void> {
+
+            private final Path directory;
+            private final int depth;
+
+            DirectoryTask(DirectoryTask parent, Path directory, int depth) {
+                super(parent);
+                this.directory = directory;
+                this.depth = depth;
+            }
+
+            @Override
+            public void compute() {
+                try {
+                    if (!stopped()) {
+                        list();
+                    }
+                } catch (RuntimeException | Error e) {
+                    // Thrown by a matcher or the error handler: the task still completes, for the end to be queued
+                    stop(e);
+                } finally {
+                    tryComplete();
+                }
+            }
+
+            @Override
+            public void onCompletion(CountedCompleter<?> caller) {
+                if (getCompleter() == null) {
+                    put(end, true);
+                }
+            }
+
+            private void list() {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                    for (Path path : entries) {
+                        if (stopped())
+                            return;
+
+                        // Matched on the name first: an entry neither streamed nor walkable is never read
+                        Path relative = root.relativize(path);
+                        boolean matches = matcher == null || matcher.matches(relative);
+                        boolean walkable = depth + 1 < maxDepth;
+                        if (!matches && !walkable)
+                            continue;
+
+                        BasicFileAttributes attributes;
+                        try {
+                            attributes = readAttributes(entries, path);
+                        } catch (NoSuchFileException e) {
+                            // Deleted since it was listed
+                            continue;
+                        }
+
+                        if (walkable && attributes.isDirectory()
+                                && (directoryMatcher == null || directoryMatcher.matches(relative))
+                                && (!followLinks || firstVisit(attributes))) {
+                            addToPendingCount(1);
+                            new DirectoryTask(this, path, depth + 1).fork();
+                        }
+                        if (matches) {
+                            put(new Entry(path, attributes, depth + 1), false);
+                        }
+                    }
+                } catch (DirectoryIteratorException e) {
+                    fail(directory, e.getCause());
+                } catch (IOException e) {
+                    fail(directory, e);
+                }
+            }
+
+            private boolean firstVisit(BasicFileAttributes attributes) {
+                return attributes.fileKey() == null || visited.add(attributes.fileKey());
+            }
+
+            private BasicFileAttributes readAttributes(DirectoryStream<Path> entries, Path path) throws IOException {
+                if (entries instanceof SecureDirectoryStream<Path> secure) {
+                    // fstatat on the open directory, with the name of the entry only
+                    return secure.getFileAttributeView(path.getFileName(), BasicFileAttributeView.class, linkOptions)
+                            .readAttributes();
+                }
+                return Files.readAttributes(path, BasicFileAttributes.class, linkOptions);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.nio.media;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of direct ByteBuffers, shared by {@link ServerAudio} and {@link ClientAudio}.
+ * <p>
+ * Direct buffers live outside of the heap: a socket or file channel reads and writes them without the extra copy
+ * through a temporary native buffer a heap buffer needs. They are expensive to allocate, so they are recycled:
+ * <ul>
+ *     <li>Buffers come in size classes, powers of two from 512 bytes to 64 KB, a request is served by the smallest
+ *     class that fits it.</li>
+ *     <li>Each thread keeps a small cache of released buffers per class, so a selector thread acquiring and releasing
+ *     its own buffers never contends with the others. The cache overflows into a shared queue per class, bounded
+ *     too: beyond it released buffers are left to the garbage collector.</li>
+ * </ul>
+ * In debug mode (system property {@code com.example.nio.media.BufferPool.debug=true} for the default pool) every
+ * acquired buffer is tracked with the stack trace of its acquisition: a buffer garbage collected without having been
+ * released is reported as a leak, releasing a buffer twice fails.
+ */
+public final class BufferPool {
+
+    public static final BufferPool DEFAULT = new BufferPool(Boolean.getBoolean(BufferPool.class.getName() + ".debug"));
+
+    private static final int MIN_SHIFT = 9;
+    private static final int MAX_SHIFT = 16;
+    private static final int THREAD_CACHE_SIZE = 32;
+    private static final int SHARED_QUEUE_SIZE = 256;
+
+    public static final int MAX_BUFFER_SIZE = 1 << MAX_SHIFT;
+
+    private final boolean debug;
+    private final SizeClass[] sizeClasses = new SizeClass[MAX_SHIFT - MIN_SHIFT + 1];
+    private final ThreadLocal<ArrayDeque<ByteBuffer>[]> threadCaches;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+
+    // Debug mode only: the buffers acquired and not released yet, by identity hash code
+    private final Map<Integer, List<LeakRecord>> tracked = new ConcurrentHashMap<>();
+    private final ReferenceQueue<ByteBuffer> collected = new ReferenceQueue<>();
+    private final LongAdder leaks = new LongAdder();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BufferPool(boolean debug) {
+        this.debug = debug;
+        for (int i = 0; i < sizeClasses.length; i++) {
+            sizeClasses[i] = new SizeClass(1 << (MIN_SHIFT + i));
+        }
+        this.threadCaches = ThreadLocal.withInitial(() -> {
+            ArrayDeque[] caches = new ArrayDeque[sizeClasses.length];
+            for (int i = 0; i < caches.length; i++) {
+                caches[i] = new ArrayDeque<ByteBuffer>(THREAD_CACHE_SIZE);
+            }
+            return caches;
+        });
+    }
+
+    /**
+     * Returns a cleared direct buffer whose limit is the requested size. Its capacity may be larger.
+     * The buffer must be given back with {@link #release(ByteBuffer)} once not used anymore.
+     *
+     * @param size The number of bytes needed, at most {@link #MAX_BUFFER_SIZE}.
+     */
+    public ByteBuffer acquire(int size) {
+        if (size <= 0 || size > MAX_BUFFER_SIZE)
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_BUFFER_SIZE + ": " + size);
+
+        int index = indexOf(size);
+        ByteBuffer buffer = threadCaches.get()[index].poll();
+        if (buffer == null) {
+            buffer = sizeClasses[index].buffers.poll();
+            if (buffer != null) {
+                sizeClasses[index].count.decrementAndGet();
+            } else {
+                buffer = ByteBuffer.allocateDirect(sizeClasses[index].size);
+                allocated.increment();
+            }
+        }
+        acquired.increment();
+
+        if (debug) {
+            reportLeaks();
+            track(buffer);
+        }
+
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer acquired from this pool back. The caller must not use it anymore, nor any view of it.
+     */
+    public void release(ByteBuffer buffer) {
+        int index = indexOfCapacity(buffer);
+        if (index < 0 || !buffer.isDirect())
+            throw new IllegalArgumentException("Buffer was not acquired from this pool: " + buffer);
+
+        if (debug && !untrack(buffer))
+            throw new IllegalStateException("Buffer released twice or not acquired from this pool: " + buffer);
+        released.increment();
+
+        buffer.clear();
+        ArrayDeque<ByteBuffer> threadCache = threadCaches.get()[index];
+        if (threadCache.size() < THREAD_CACHE_SIZE) {
+            threadCache.push(buffer);
+            return;
+        }
+
+        SizeClass sizeClass = sizeClasses[index];
+        if (sizeClass.count.incrementAndGet() <= SHARED_QUEUE_SIZE) {
+            sizeClass.buffers.add(buffer);
+        } else {
+            // Enough buffers pooled already, this one goes to the garbage collector
+            sizeClass.count.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns whether the buffer may have been acquired from a pool: a direct, writable buffer
+     * whose capacity is one of the size classes.
+     */
+    public boolean isPoolable(ByteBuffer buffer) {
+        return buffer.isDirect() && !buffer.isReadOnly() && indexOfCapacity(buffer) >= 0;
+    }
+
+    private static int indexOf(int size) {
+        int shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+        return shift - MIN_SHIFT;
+    }
+
+    private static int indexOfCapacity(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1 || capacity < (1 << MIN_SHIFT) || capacity > MAX_BUFFER_SIZE) {
+            return -1;
+        }
+        return Integer.numberOfTrailingZeros(capacity) - MIN_SHIFT;
+    }
+
+    private void track(ByteBuffer buffer) {
+        LeakRecord record = new LeakRecord(buffer, collected);
+        tracked.compute(record.identity, (identity, records) -> {
+            List<LeakRecord> list = records != null ? records : new ArrayList<>(1);
+            list.add(record);
+            return list;
+        });
+    }
+
+    private boolean untrack(ByteBuffer buffer) {
+        boolean[] found = new boolean[1];
+        tracked.computeIfPresent(System.identityHashCode(buffer), (identity, records) -> {
+            found[0] = records.removeIf(record -> record.get() == buffer);
+            return records.isEmpty() ? null : records;
+        });
+        return found[0];
+    }
+
+    /**
+     * Reports the buffers garbage collected while still acquired.
+     */
+    private void reportLeaks() {
+        Reference<? extends ByteBuffer> reference;
+        while ((reference = collected.poll()) != null) {
+            LeakRecord record = (LeakRecord) reference;
+            boolean[] leaked = new boolean[1];
+            tracked.computeIfPresent(record.identity, (identity, records) -> {
+                leaked[0] = records.remove(record);
+                return records.isEmpty() ? null : records;
+            });
+
+            if (leaked[0]) {
+                leaks.increment();
+                System.err.println("LEAK: a pooled buffer was garbage collected without being released, acquired at:");
+                record.acquisition.printStackTrace();
+            }
+        }
+    }
+
+    public long getAcquired() {
+        return acquired.sum();
+    }
+
+    public long getReleased() {
+        return released.sum();
+    }
+
+    /**
+     * Returns the number of buffers acquired and not released yet.
+     */
+    public long getOutstanding() {
+        return acquired.sum() - released.sum();
+    }
+
+    /**
+     * Returns the number of direct buffers allocated because no pooled buffer was available.
+     */
+    public long getAllocated() {
+        return allocated.sum();
+    }
+
+    /**
+     * Returns the number of leaks reported so far, always 0 out of debug mode.
+     */
+    public long getLeaks() {
+        if (debug) {
+            reportLeaks();
+        }
+        return leaks.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{acquired=" + getAcquired() + ", released=" + getReleased() + ", allocated=" + getAllocated()
+                + ", outstanding=" + getOutstanding() + ", leaks=" + getLeaks() + ", debug=" + debug + '}';
+    }
+
+    private static final class SizeClass {
+
+        private final int size;
+        private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        private SizeClass(int size) {
+            this.size = size;
+        }
+    }
+
+    private static final class LeakRecord extends WeakReference<ByteBuffer> {
+
+        private final int identity;
+        private final Throwable acquisition = new Throwable("Buffer acquisition");
+
+        private LeakRecord(ByteBuffer buffer, ReferenceQueue<ByteBuffer> queue) {
+            super(buffer, queue);
+            this.identity = System.identityHashCode(buffer);
+        }
+    }
+}
@@ -1,49 +1,280 @@
 package com.example.nio.media;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.Socket;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
 
+/**
+ * Plays the audio streamed by {@link ServerAudio}.
+ * <p>
+ * The client is non-blocking: every connection is a SocketChannel registered with one Selector, so a single thread
+ * can drive one connection or thousands of them, e.g. to load test the server with simulated listeners from one JVM.
+ * The audio is read straight into a pooled direct buffer per connection and rendered without being copied.
+ */
 public class ClientAudio {
 
     private static final String SERVER_ADDRESS = "127.0.0.1";
     private static final int PORT = 12345;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final BufferPool bufferPool;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private volatile Selector selector;
+    private volatile boolean stopped;
+
+    public ClientAudio() {
+        this(BufferPool.DEFAULT);
+    }
+
+    public ClientAudio(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
 
     public void process(MediaPlayer mediaPlayer) throws IOException {
-        try (Socket socket = new Socket(SERVER_ADDRESS, PORT);
-             InputStream inputStream = socket.getInputStream();
-             OutputStream outputStream = socket.getOutputStream()) {
+        process(1, connection -> mediaPlayer);
+    }
+
+    /**
+     * Opens the connections, sends PLAY on each one and renders what they receive, all on the calling thread.
+     * Returns once the server closed every connection or {@link #stop()} was called.
+     *
+     * @param connectionCount The number of connections to open.
+     * @param mediaPlayers    Gives the player of each connection, by its index.
+     */
+    public void process(int connectionCount, IntFunction<MediaPlayer> mediaPlayers) throws IOException {
+        if (connectionCount <= 0)
+            throw new IllegalArgumentException("Connection count must be positive");
+
+        stopped = false;
+        try (Selector selector = Selector.open()) {
+            this.selector = selector;
+            try {
+                /**
+                 * The connections are opened in non-blocking mode: connect() returns at once and
+                 * OP_CONNECT reports when the handshake is done, so thousands of them connect concurrently.
+                 */
+                for (int i = 0; i < connectionCount; i++) {
+                    openConnection(selector, mediaPlayers.apply(i));
+                }
+
+                while (!stopped && connections.get() > 0) {
+                    selector.select();
+
+                    Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                    while (keyIterator.hasNext()) {
+                        SelectionKey key = keyIterator.next();
+                        keyIterator.remove();
+
+                        try {
+                            processConnection(key);
+                        } catch (IOException e) {
+                            // One failed listener does not stop the others
+                            System.out.println("Connection failed: " + e.getMessage());
+                            closeConnection(key);
+                        }
+                    }
+                }
+            } finally {
+                // The connections left open when stopped, or when one could not be opened
+                for (SelectionKey key : selector.keys()) {
+                    closeConnection(key);
+                }
+                this.selector = null;
+            }
+        }
+    }
 
-            // Send commands to the server
-            sendCommand(outputStream, "PLAY");
-            /*sendCommand(outputStream, "STOP");
-            sendCommand(outputStream, "SEEK");
-            sendCommand(outputStream, "CLOSE");*/
+    /**
+     * Makes {@link #process} close every connection and return. Can be called from any thread.
+     */
+    public void stop() {
+        stopped = true;
+        Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
 
-            processAudio(inputStream, mediaPlayer);
+    /**
+     * Returns the number of connections still open.
+     */
+    public int getConnections() {
+        return connections.get();
+    }
 
-        } catch (IOException e) {
+    /**
+     * Returns the number of audio bytes received by every connection so far.
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    private void openConnection(Selector selector, MediaPlayer mediaPlayer) throws IOException {
+        SocketChannel socketChannel = SocketChannel.open();
+        Connection connection = null;
+        try {
+            socketChannel.configureBlocking(false);
+            connection = new Connection(mediaPlayer);
+            SelectionKey key = socketChannel.register(selector, 0, connection);
+
+            // A connection to a local server may be established at once, without any OP_CONNECT
+            if (socketChannel.connect(new InetSocketAddress(SERVER_ADDRESS, PORT))) {
+                connected(key, connection);
+            } else {
+                key.interestOps(SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Closing the channel cancels its key, the buffers go back to the pool
+            if (connection != null) {
+                connection.close();
+            }
+            socketChannel.close();
             throw e;
         }
+        connections.incrementAndGet();
     }
 
-    private static void sendCommand(OutputStream outputStream, String command) throws IOException {
-        // Send a command to the server
-        outputStream.write((command + "\n").getBytes());
+    private void connected(SelectionKey key, Connection connection) {
+        // Send commands to the server
+        connection.queueCommand(Command.PLAY);
+        /*connection.queueCommand(Command.STOP);
+        connection.queueSeek(1024);
+        connection.queueCommand(Command.CLOSE);*/
+
+        key.interestOps(SelectionKey.OP_WRITE | SelectionKey.OP_READ);
     }
 
-    private static void processAudio(InputStream inputStream, MediaPlayer mediaPlayer) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
-        byte[] readData = new byte[1024];
-        int bytesRead;
+    private void processConnection(SelectionKey key) throws IOException {
+        SocketChannel socketChannel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
 
+        if (key.isConnectable()) {
+            socketChannel.finishConnect();
+            connected(key, connection);
+        }
+
+        if (key.isValid() && key.isWritable()) {
+            // The commands may need more than one write once the socket send buffer is full
+            if (connection.writeCommands(socketChannel)) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        if (key.isValid() && key.isReadable()) {
+            processAudio(key, socketChannel, connection);
+        }
+    }
+
+    private void processAudio(SelectionKey key, SocketChannel socketChannel, Connection connection) throws IOException {
         // Read and process audio data from the server
-        while ((bytesRead = inputStream.read(readData)) != -1) {
-            buffer.put(readData, 0, bytesRead);
-            mediaPlayer.render(buffer);
+        int bytesRead = socketChannel.read(connection.buffer);
+        if (bytesRead == -1) {
+            closeConnection(key);
+            return;
+        }
+        if (bytesRead > 0) {
+            bytesReceived.addAndGet(bytesRead);
+            connection.render();
+        }
+    }
+
+    private void closeConnection(SelectionKey key) throws IOException {
+        key.cancel();
+        key.channel().close();
+
+        Connection connection = (Connection) key.attachment();
+        if (connection.close()) {
+            connections.decrementAndGet();
+        }
+    }
+
+    /**
+     * The state of one connection, only touched by the thread running {@link #process}.
+     */
+    private final class Connection {
+
+        private final MediaPlayer mediaPlayer;
+        private final ByteBuffer buffer = bufferPool.acquire(BUFFER_SIZE);
+
+        /**
+         * A read-only view sharing the content of the buffer, created once: the player sees the bytes just read
+         * without a copy, and cannot change the buffer the next read goes to.
+         */
+        private final ByteBuffer view = buffer.asReadOnlyBuffer();
+
+        private ByteBuffer commands;
+        private boolean closed;
+
+        Connection(MediaPlayer mediaPlayer) {
+            this.mediaPlayer = mediaPlayer;
+        }
+
+        void queueCommand(Command command) {
+            command.writeTo(commandBuffer(Command.HEADER_SIZE));
+        }
+
+        void queueSeek(long position) {
+            // A SEEK frame, its payload is the position to seek to
+            Command.writeSeek(commandBuffer(Command.HEADER_SIZE + Long.BYTES), position);
+        }
+
+        private ByteBuffer commandBuffer(int frameSize) {
+            if (commands == null) {
+                commands = bufferPool.acquire(Command.MAX_PAYLOAD_SIZE);
+            }
+            if (commands.remaining() < frameSize)
+                throw new IllegalStateException("Too many commands queued");
+            return commands;
+        }
+
+        /**
+         * @return true once every queued command was written.
+         */
+        boolean writeCommands(SocketChannel socketChannel) throws IOException {
+            if (commands == null) {
+                return true;
+            }
+            commands.flip();
+            socketChannel.write(commands);
+            if (commands.hasRemaining()) {
+                commands.compact();
+                return false;
+            }
+            bufferPool.release(commands);
+            commands = null;
+            return true;
+        }
+
+        void render() {
+            // Only the bytes just read are rendered
+            view.limit(buffer.position());
+            view.position(0);
+            mediaPlayer.render(view);
             buffer.clear();
         }
+
+        /**
+         * @return false if the connection was already closed.
+         */
+        boolean close() {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            if (commands != null) {
+                bufferPool.release(commands);
+                commands = null;
+            }
+            bufferPool.release(buffer);
+            return true;
+        }
     }
 }
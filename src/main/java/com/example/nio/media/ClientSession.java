@@ -0,0 +1,166 @@
+package com.example.nio.media;
+
+/**
+ * Per-connection playback state, attached to the client's SelectionKey.
+ * <p>
+ * Every client owns its playback cursor: the offset of the next byte to read from the audio file.
+ * Reads and transfers are positional, so many clients can stream and seek the same file in parallel
+ * without moving each other's position and without any locking.
+ * <p>
+ * The bytes read from the cursor but not yet accepted by the socket wait in the client's bounded
+ * {@link OutboundQueue}, so a write interrupted by a full socket send buffer is resumed on the next
+ * OP_WRITE readiness instead of spinning on the write.
+ */
+class ClientSession {
+
+    /**
+     * PLAYING sends the media from the cursor, PAUSED keeps the cursor and the queued bytes until RESUME,
+     * STOPPED is the state before the first PLAY, after STOP and once the whole media was sent.
+     */
+    enum PlaybackState {
+        STOPPED, PLAYING, PAUSED
+    }
+
+    private final CommandParser commandParser = new CommandParser();
+    private final OutboundQueue outboundQueue;
+    private final SelectorWorker worker;
+    private MappedFileCache.MappedFile mappedFile;
+    private long position;
+    private PlaybackState state = PlaybackState.STOPPED;
+    private long lastProgressNanos;
+    private boolean stalled;
+
+    private long pacingStartNanos;
+    private long pacingStartPosition;
+    private boolean pacingWakeUpScheduled;
+
+    ClientSession(FlowControl flowControl, BufferPool bufferPool, SelectorWorker worker) {
+        this.outboundQueue = new OutboundQueue(flowControl, bufferPool);
+        this.worker = worker;
+    }
+
+    /**
+     * Returns the event loop owning the connection, the only thread allowed to touch this session.
+     */
+    SelectorWorker getWorker() {
+        return worker;
+    }
+
+    CommandParser getCommandParser() {
+        return commandParser;
+    }
+
+    OutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
+    PlaybackState getState() {
+        return state;
+    }
+
+    void setState(PlaybackState state) {
+        this.state = state;
+        if (state == PlaybackState.PLAYING) {
+            progress();
+            restartPacing();
+        }
+    }
+
+    void seek(long position) {
+        if (position < 0)
+            throw new IllegalArgumentException("Position must not be negative");
+        this.position = position;
+
+        // Bytes read ahead from the old position must not be sent anymore
+        outboundQueue.clear();
+        restartPacing();
+    }
+
+    /**
+     * Returns the file position the client may be sent up to (exclusive): the media played in real time since
+     * the pacing started, plus the lead.
+     */
+    long getPacingLimit(Pacing pacing, long nowNanos) {
+        long elapsedNanos = nowNanos - pacingStartNanos;
+        long playedBytes = pacing.getBytesPerSecond() * (elapsedNanos / 1_000_000) / 1000;
+        return pacingStartPosition + pacing.getLeadBytes() + playedBytes;
+    }
+
+    /**
+     * Starts the real time clock of the pacing again from the current position,
+     * when the playback starts, resumes or jumps.
+     */
+    private void restartPacing() {
+        this.pacingStartNanos = System.nanoTime();
+        this.pacingStartPosition = position;
+    }
+
+    /**
+     * Marks a pacing wake up as scheduled, returns false if one was already.
+     */
+    boolean schedulePacingWakeUp() {
+        boolean first = !pacingWakeUpScheduled;
+        pacingWakeUpScheduled = true;
+        return first;
+    }
+
+    void pacingWakeUpDone() {
+        pacingWakeUpScheduled = false;
+    }
+
+    void advance(long bytes) {
+        this.position += bytes;
+    }
+
+    /**
+     * Records that the socket accepted bytes, the client is not stalled.
+     */
+    void progress() {
+        this.lastProgressNanos = System.nanoTime();
+        this.stalled = false;
+    }
+
+    /**
+     * Returns whether the client is playing but its socket accepted nothing for longer than the given time.
+     */
+    boolean isStalledFor(long maxStallNanos, long nowNanos) {
+        return state == PlaybackState.PLAYING && nowNanos - lastProgressNanos > maxStallNanos;
+    }
+
+    /**
+     * Marks the client as stalled, returns false if it was already marked since its last progress.
+     */
+    boolean markStalled() {
+        boolean first = !stalled;
+        stalled = true;
+        return first;
+    }
+
+    MappedFileCache.MappedFile getMappedFile() {
+        return mappedFile;
+    }
+
+    void setMappedFile(MappedFileCache.MappedFile mappedFile) {
+        this.mappedFile = mappedFile;
+    }
+
+    /**
+     * Releases the resources of the session once its connection is closed.
+     */
+    void close() {
+        state = PlaybackState.STOPPED;
+        outboundQueue.clear();
+    }
+
+    boolean isFinished(long size) {
+        return position >= size && outboundQueue.isEmpty();
+    }
+
+    long getPosition() {
+        return position;
+    }
+
+    boolean isPlaying() {
+        return state == PlaybackState.PLAYING;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.nio.media;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The commands a client sends to {@link ServerAudio}.
+ * <p>
+ * Every command travels in a binary frame: a 1 byte opcode, a 4 byte payload length (big-endian)
+ * and the payload itself. Only SEEK carries a payload, the 8 byte position to seek to.
+ * Framing lets the server find the command boundaries whatever way TCP splits or merges the bytes,
+ * see {@link CommandParser}.
+ */
+public enum Command {
+
+    PLAY(1, 0),
+    STOP(2, 0),
+    SEEK(3, Long.BYTES),
+    CLOSE(4, 0),
+    PAUSE(5, 0),
+    RESUME(6, 0);
+
+    public static final int HEADER_SIZE = 1 + Integer.BYTES;
+    public static final int MAX_PAYLOAD_SIZE = 1024;
+
+    private static final Command[] BY_OPCODE = new Command[256];
+
+    static {
+        for (Command command : values()) {
+            BY_OPCODE[command.opcode] = command;
+        }
+    }
+
+    private final byte opcode;
+    private final int payloadSize;
+
+    Command(int opcode, int payloadSize) {
+        this.opcode = (byte) opcode;
+        this.payloadSize = payloadSize;
+    }
+
+    public byte getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Returns the exact payload length this command must carry.
+     */
+    public int getPayloadSize() {
+        return payloadSize;
+    }
+
+    /**
+     * Returns the command of the opcode, or null if the opcode is unknown.
+     */
+    public static Command fromOpcode(byte opcode) {
+        return BY_OPCODE[opcode & 0xFF];
+    }
+
+    /**
+     * Writes the frame of a command without payload into the buffer.
+     */
+    public void writeTo(ByteBuffer dst) {
+        if (payloadSize != 0)
+            throw new IllegalStateException(this + " requires a payload of " + payloadSize + " bytes");
+        dst.put(opcode).putInt(0);
+    }
+
+    /**
+     * Writes the frame of a SEEK to the position into the buffer.
+     */
+    public static void writeSeek(ByteBuffer dst, long position) {
+        dst.put(SEEK.opcode).putInt(Long.BYTES).putLong(position);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.nio.media;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Incremental parser of the {@link Command} frames sent by one client connection.
+ * <p>
+ * The bytes read from the channel accumulate in the parser's own buffer. {@link #next()} returns the commands
+ * of the complete frames one by one and keeps the bytes of an incomplete frame for the next read, so a command
+ * split across TCP reads, or several commands received in one read, are handled the same way.
+ * Parsing allocates nothing: the payload is exposed as a view on the parser's buffer.
+ * <p>
+ * Not thread safe, each connection has its own parser, used by the thread of its selector.
+ */
+class CommandParser {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(Command.HEADER_SIZE + Command.MAX_PAYLOAD_SIZE);
+    private final ByteBuffer payload = buffer.asReadOnlyBuffer();
+
+    CommandParser() {
+        // The buffer is kept ready for reading frames between calls
+        buffer.flip();
+    }
+
+    /**
+     * Reads the available bytes of the channel into the parser.
+     *
+     * @return The number of bytes read, -1 if the channel reached end-of-stream.
+     */
+    int read(ReadableByteChannel channel) throws IOException {
+        buffer.compact();
+        try {
+            return channel.read(buffer);
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Returns the command of the next complete frame, or null if no complete frame was received yet.
+     * Its payload is available from {@link #getPayload()} until the next call.
+     *
+     * @throws ProtocolException If the frame has an unknown opcode or an invalid length.
+     */
+    Command next() throws ProtocolException {
+        if (buffer.remaining() < Command.HEADER_SIZE) {
+            return null;
+        }
+
+        int start = buffer.position();
+        Command command = Command.fromOpcode(buffer.get(start));
+        int length = buffer.getInt(start + 1);
+
+        if (command == null)
+            throw new ProtocolException("Unknown opcode: " + buffer.get(start));
+        if (length != command.getPayloadSize())
+            throw new ProtocolException(command + " payload must be " + command.getPayloadSize() + " bytes, got: " + length);
+
+        // Incomplete frame, wait for the rest of the bytes
+        if (buffer.remaining() < Command.HEADER_SIZE + length) {
+            return null;
+        }
+
+        int payloadStart = start + Command.HEADER_SIZE;
+        payload.limit(payloadStart + length).position(payloadStart);
+        buffer.position(payloadStart + length);
+        return command;
+    }
+
+    /**
+     * Returns the payload of the command last returned by {@link #next()}.
+     */
+    ByteBuffer getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.nio.media;
+
+/**
+ * Flow control settings of the client connections of {@link ServerAudio}.
+ * <p>
+ * Each connection queues the bytes read from the media file until the socket accepts them. Once the queued bytes
+ * reach the high watermark the server stops reading for that client, and resumes only when the queue has drained
+ * down to the low watermark, so the memory held per connection stays bounded whatever the speed of the client.
+ * <p>
+ * A client whose socket accepts nothing for longer than {@code maxStallMillis} is a slow consumer: depending on
+ * the policy it is disconnected, or it stays connected without any more bytes read for it until it catches up.
+ * Either way it never holds back the other clients of its selector.
+ */
+public final class FlowControl {
+
+    public enum SlowConsumerPolicy {
+        DROP, THROTTLE
+    }
+
+    public static final FlowControl DEFAULT =
+            new FlowControl(32 * 1024, 128 * 1024, SlowConsumerPolicy.THROTTLE, 30_000);
+
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final long maxStallMillis;
+
+    public FlowControl(int lowWatermark, int highWatermark, SlowConsumerPolicy slowConsumerPolicy, long maxStallMillis) {
+        if (lowWatermark < 0 || highWatermark <= lowWatermark)
+            throw new IllegalArgumentException("Watermarks must satisfy 0 <= low < high");
+        if (maxStallMillis <= 0)
+            throw new IllegalArgumentException("Max stall must be a positive value");
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.maxStallMillis = maxStallMillis;
+    }
+
+    public int getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public int getHighWatermark() {
+        return highWatermark;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public long getMaxStallMillis() {
+        return maxStallMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "FlowControl{lowWatermark=" + lowWatermark + ", highWatermark=" + highWatermark
+                + ", slowConsumerPolicy=" + slowConsumerPolicy + ", maxStallMillis=" + maxStallMillis + '}';
+    }
+}
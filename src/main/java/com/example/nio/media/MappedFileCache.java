@@ -0,0 +1,174 @@
+package com.example.nio.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of memory-mapped media files, shared by every client of {@link ServerAudio}.
+ * <p>
+ * Each file is mapped once with FileChannel.map into read-only MappedByteBuffer segments
+ * (a single mapping cannot exceed 2 GB). Clients never read the segments directly, they get
+ * duplicate() views with their own position and limit, so hundreds of clients playing the same file
+ * share the same pages of the OS page cache without any disk read or heap buffer of their own.
+ * <p>
+ * The cache keeps at most {@code maxBytes} of mapped files, the least recently used files are evicted first.
+ * An evicted mapping is released by the garbage collector once no client holds a view of it anymore.
+ * A file larger than the whole budget is still mapped, but it is not retained.
+ */
+public class MappedFileCache {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final long maxBytes;
+    private final int segmentSize;
+
+    // Access ordered: iteration starts from the least recently used file
+    private final LinkedHashMap<Path, MappedFile> files = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long mappedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public MappedFileCache(long maxBytes) {
+        this(maxBytes, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedFileCache(long maxBytes, int segmentSize) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Max bytes must be a positive value");
+        if (segmentSize <= 0)
+            throw new IllegalArgumentException("Segment size must be a positive value");
+        this.maxBytes = maxBytes;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns the mapping of the file, mapping it on the first request or when the file changed since it was mapped.
+     *
+     * @param path The media file.
+     * @throws IOException If the file cannot be read or mapped.
+     */
+    public synchronized MappedFile get(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        long size = Files.size(key);
+        FileTime lastModified = Files.getLastModifiedTime(key);
+
+        MappedFile mappedFile = files.get(key);
+        if (mappedFile != null && mappedFile.size == size && mappedFile.lastModified.equals(lastModified)) {
+            hits++;
+            return mappedFile;
+        }
+
+        misses++;
+        if (mappedFile != null) {
+            remove(key);
+        }
+
+        mappedFile = map(key, size, lastModified);
+        if (size <= maxBytes) {
+            files.put(key, mappedFile);
+            mappedBytes += size;
+            evict();
+        }
+        return mappedFile;
+    }
+
+    private MappedFile map(Path path, long size, FileTime lastModified) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int count = (int) ((size + segmentSize - 1) / segmentSize);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+
+            for (int i = 0; i < count; i++) {
+                long position = (long) i * segmentSize;
+                // The mapping stays valid after the channel is closed
+                segments[i] = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position));
+            }
+            return new MappedFile(segments, segmentSize, size, lastModified);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Path, MappedFile>> iterator = files.entrySet().iterator();
+        while (mappedBytes > maxBytes && iterator.hasNext()) {
+            mappedBytes -= iterator.next().getValue().size;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private void remove(Path key) {
+        MappedFile removed = files.remove(key);
+        if (removed != null) {
+            mappedBytes -= removed.size;
+        }
+    }
+
+    public synchronized long getMappedBytes() {
+        return mappedBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MappedFileCache{files=" + files.size() + ", mappedBytes=" + mappedBytes + ", maxBytes=" + maxBytes
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + '}';
+    }
+
+    /**
+     * A media file mapped into read-only segments. Immutable, it can be shared by any number of threads.
+     */
+    public static final class MappedFile {
+
+        private final MappedByteBuffer[] segments;
+        private final int segmentSize;
+        private final long size;
+        private final FileTime lastModified;
+
+        private MappedFile(MappedByteBuffer[] segments, int segmentSize, long size, FileTime lastModified) {
+            this.segments = segments;
+            this.segmentSize = segmentSize;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Returns a new read-only view of the segment containing the position, starting at the position
+         * and ending at the end of that segment. The view shares the mapped memory, no byte is copied.
+         *
+         * @param position The file position, between 0 (inclusive) and the file size (exclusive).
+         */
+        public ByteBuffer slice(long position) {
+            if (position < 0 || position >= size)
+                throw new IndexOutOfBoundsException("Position " + position + " outside of file of size " + size);
+
+            ByteBuffer view = segments[(int) (position / segmentSize)].duplicate();
+            view.position((int) (position % segmentSize));
+            return view;
+        }
+    }
+}
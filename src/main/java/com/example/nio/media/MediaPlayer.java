@@ -4,5 +4,11 @@ import java.nio.ByteBuffer;
 
 @FunctionalInterface
 public interface MediaPlayer {
+
+    /**
+     * Renders the audio bytes between the position and the limit of the buffer.
+     * The buffer is a read-only view of the connection's read buffer, reused for the next read once the call returns,
+     * it must not be kept.
+     */
     void render(ByteBuffer byteBuffer);
 }
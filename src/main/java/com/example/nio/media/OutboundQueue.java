@@ -0,0 +1,138 @@
+package com.example.nio.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+
+/**
+ * The bytes waiting to be written to one client connection, bounded by the watermarks of {@link FlowControl}.
+ * <p>
+ * The queue is writable until the queued bytes reach the high watermark, then it stays unwritable until it
+ * drains down to the low watermark. The hysteresis keeps the producer from waking up for every few bytes
+ * the socket accepts.
+ * <p>
+ * Queued buffers are written with gathering writes. The chunks handed out by {@link #allocateChunk()} are direct
+ * buffers of the {@link BufferPool}, given back once written, so a connection does not allocate while streaming.
+ * The queue must be {@link #clear() cleared} when the connection closes, to give back the chunks still queued.
+ * Not thread safe, it is only used by the selector thread of its connection.
+ */
+class OutboundQueue {
+
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    private static final int MAX_GATHER = 16;
+
+    private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+    private final BufferPool bufferPool;
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private final int lowWatermark;
+    private final int highWatermark;
+
+    private long queuedBytes;
+    private boolean writable = true;
+
+    OutboundQueue(FlowControl flowControl, BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        this.lowWatermark = flowControl.getLowWatermark();
+        this.highWatermark = flowControl.getHighWatermark();
+    }
+
+    /**
+     * Returns an empty chunk from the pool to fill and {@link #add(ByteBuffer)}.
+     */
+    ByteBuffer allocateChunk() {
+        return bufferPool.acquire(CHUNK_SIZE);
+    }
+
+    /**
+     * Gives a chunk back to the pool. Buffers not coming from the pool, like the read-only views
+     * of a mapped file, are simply dropped.
+     */
+    void recycle(ByteBuffer buffer) {
+        if (bufferPool.isPoolable(buffer)) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Queues the remaining bytes of the buffer.
+     */
+    void add(ByteBuffer buffer) {
+        buffers.add(buffer);
+        queuedBytes += buffer.remaining();
+        if (queuedBytes >= highWatermark) {
+            writable = false;
+        }
+    }
+
+    /**
+     * Writes queued bytes until the queue is empty or the channel accepts no more.
+     *
+     * @return The number of bytes written.
+     */
+    long writeTo(GatheringByteChannel channel) throws IOException {
+        long written = 0;
+
+        while (!buffers.isEmpty()) {
+            int count = 0;
+            long gathered = 0;
+            for (ByteBuffer buffer : buffers) {
+                if (count == MAX_GATHER) {
+                    break;
+                }
+                gather[count++] = buffer;
+                gathered += buffer.remaining();
+            }
+
+            long bytesWritten = channel.write(gather, 0, count);
+            written += bytesWritten;
+            queuedBytes -= bytesWritten;
+
+            // Drop (and recycle) the buffers that were written completely
+            while (!buffers.isEmpty() && !buffers.peek().hasRemaining()) {
+                recycle(buffers.poll());
+            }
+            for (int i = 0; i < count; i++) {
+                gather[i] = null;
+            }
+
+            // Partial write: the socket send buffer is full
+            if (bytesWritten < gathered) {
+                break;
+            }
+        }
+
+        if (queuedBytes <= lowWatermark) {
+            writable = true;
+        }
+        return written;
+    }
+
+    /**
+     * Returns whether more bytes may be queued: false from the moment the high watermark is reached
+     * until the queue drains down to the low watermark.
+     */
+    boolean isWritable() {
+        return writable;
+    }
+
+    boolean isEmpty() {
+        return buffers.isEmpty();
+    }
+
+    long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * Drops the queued bytes, giving their chunks back to the pool.
+     */
+    void clear() {
+        while (!buffers.isEmpty()) {
+            recycle(buffers.poll());
+        }
+        queuedBytes = 0;
+        writable = true;
+    }
+}
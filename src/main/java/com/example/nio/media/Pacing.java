@@ -0,0 +1,40 @@
+package com.example.nio.media;
+
+/**
+ * Pacing of the playback of {@link ServerAudio}: a client is sent the media at its bitrate, plus a lead.
+ * <p>
+ * The lead is how far ahead of real time the server may go, the buffer the client can play from while the next
+ * bytes are on their way. Without pacing the file is sent as fast as the socket accepts it, flooding the client's
+ * buffers and causing bursts of bandwidth when many sessions start together.
+ */
+public final class Pacing {
+
+    private final long bytesPerSecond;
+    private final long leadBytes;
+
+    /**
+     * @param bitsPerSecond The bitrate of the media, 128 000 for a 128 kbps mp3.
+     * @param leadMillis    How much media the client may receive ahead of real time.
+     */
+    public Pacing(long bitsPerSecond, long leadMillis) {
+        if (bitsPerSecond < Byte.SIZE)
+            throw new IllegalArgumentException("Bitrate must be at least one byte per second");
+        if (leadMillis < 0)
+            throw new IllegalArgumentException("Lead must not be negative");
+        this.bytesPerSecond = bitsPerSecond / Byte.SIZE;
+        this.leadBytes = bytesPerSecond * leadMillis / 1000;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public long getLeadBytes() {
+        return leadBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Pacing{bytesPerSecond=" + bytesPerSecond + ", leadBytes=" + leadBytes + '}';
+    }
+}
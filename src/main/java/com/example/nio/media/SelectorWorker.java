@@ -0,0 +1,247 @@
+package com.example.nio.media;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An event loop of {@link ServerAudio}: one Selector, driven by one thread.
+ * <p>
+ * Client channels are handed over by the acceptor through {@link #register(SocketChannel)}. A channel can only be
+ * registered safely by the thread that runs the selector, so the channel is queued and the selector woken up,
+ * the loop registers it before its next select.
+ * <p>
+ * Every channel stays on the worker that registered it, so its ClientSession is only ever touched by one thread.
+ * The connection count and the bytes sent can be read from any thread.
+ */
+public class SelectorWorker implements Runnable {
+
+    /**
+     * How often the clients are checked for slow consumers, the select() wakes up at least that often.
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    private final String name;
+    private final Selector selector;
+    private final StreamHandler handler;
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private volatile boolean closed;
+
+    SelectorWorker(String name, Selector selector, StreamHandler handler) {
+        this.name = name;
+        this.selector = selector;
+        this.handler = handler;
+    }
+
+    @Override
+    public void run() {
+        long lastSweep = System.nanoTime();
+        try {
+            while (!closed) {
+                /**
+                 * When a client attempts to establish a connection, the select() method will return, and readyChannels will be greater than 0
+                 */
+                int readyChannels = selector.select(SWEEP_INTERVAL_MILLIS);
+
+                registerPendingChannels();
+                runPendingTasks();
+
+                if (readyChannels > 0) {
+                    Set<SelectionKey> selectedKeys = selector.selectedKeys();
+                    Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+
+                    while (keyIterator.hasNext()) {
+                        SelectionKey key = keyIterator.next();
+                        keyIterator.remove();
+
+                        /**
+                         * checks if ServerSocketChannel is ready to accept connections (if not might be network, resources issues or others)
+                         */
+                        if (key.isAcceptable()) {
+                            accept(key);
+                        } else {
+                            processClient(key);
+                        }
+                    }
+                }
+
+                long now = System.nanoTime();
+                if (now - lastSweep >= TimeUnit.MILLISECONDS.toNanos(SWEEP_INTERVAL_MILLIS)) {
+                    sweepSlowConsumers(now);
+                    lastSweep = now;
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // The server was closed while waiting in select()
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        System.out.println(this + " stopped");
+    }
+
+    void register(SocketChannel clientChannel) {
+        pendingChannels.add(clientChannel);
+        selector.wakeup();
+    }
+
+    /**
+     * Runs the task on the thread of this worker, before its next select.
+     */
+    void execute(Runnable task) {
+        pendingTasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the loop, which closes the selector itself: a selector closed by another thread could be in the middle of
+     * an iteration over its keys. Can be called from any thread, including the thread of this worker.
+     */
+    void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel clientChannel;
+        while ((clientChannel = pendingChannels.poll()) != null) {
+            try {
+                clientChannel.register(selector, SelectionKey.OP_READ, handler.newSession(this));
+                connections.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                // Closed by the client before it could be registered
+                System.out.println("Client error: " + e.getMessage());
+                try {
+                    clientChannel.close();
+                } catch (IOException closeError) {
+                    System.out.println("Client close error: " + closeError.getMessage());
+                }
+            }
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // A failed task must not stop the loop of every other client
+                System.out.println("Task error: " + e);
+            }
+        }
+    }
+
+    private void accept(SelectionKey key) {
+        try {
+            handler.getServer().accept((ServerSocketChannel) key.channel());
+        } catch (IOException | RuntimeException e) {
+            // e.g. too many open files: the next connection may be accepted
+            System.out.println("Accept error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the slow consumer policy to the clients whose socket has accepted nothing for too long.
+     * A client that does not read never gets an OP_WRITE readiness, so it has to be looked for.
+     */
+    private void sweepSlowConsumers(long now) {
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && key.attachment() instanceof ClientSession
+                    && handler.isSlowConsumerToDrop(key, now)) {
+                closeClient(key);
+            }
+        }
+    }
+
+    private void processClient(SelectionKey key) {
+        try {
+            if (key.isReadable()) {
+                // Read from the client, straight into the command parser of its session
+                SocketChannel clientChannel = (SocketChannel) key.channel();
+                ClientSession session = (ClientSession) key.attachment();
+                int bytesRead = session.getCommandParser().read(clientChannel);
+
+                if (bytesRead == -1) {
+                    // Client disconnected
+                    closeClient(key);
+                    return;
+                }
+
+                handler.processClientRequest(key);
+            }
+
+            /**
+             * The socket has room in its send buffer again, continue the transfer
+             * from where this client stopped.
+             */
+            if (key.isValid() && key.isWritable()) {
+                bytesSent.addAndGet(handler.streamAudio(key));
+            }
+        } catch (IOException | RuntimeException e) {
+            // A broken client connection, or a failure handling it, must not take the whole server down
+            System.out.println("Client error: " + e);
+            closeClient(key);
+        }
+    }
+
+    /**
+     * Closes the client and releases its session, whatever fails: a client that cannot be closed cleanly must not
+     * stop the loop of the other clients of this worker.
+     */
+    private void closeClient(SelectionKey key) {
+        if (!key.isValid()) {
+            // Already closed
+            return;
+        }
+        try {
+            ((ClientSession) key.attachment()).close();
+        } catch (RuntimeException e) {
+            System.out.println("Client session close error: " + e);
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            System.out.println("Client close error: " + e.getMessage());
+        }
+        connections.decrementAndGet();
+        System.out.println("Client disconnected, " + this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + "{connections=" + getConnections() + ", bytesSent=" + getBytesSent() + '}';
+    }
+}
@@ -1,22 +1,56 @@
 package com.example.nio.media;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
-import java.util.Set;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 public class ServerAudio {
 
+    /**
+     * How the audio file is pushed to the client on PLAY.
+     * <p>
+     * COPY reads the file into a heap buffer and writes it to the socket.
+     * ZERO_COPY hands file regions to the socket with FileChannel.transferTo (sendfile on most platforms),
+     * so the bytes never enter the JVM heap. Each client keeps its own position and the transfer
+     * continues on OP_WRITE readiness instead of blocking the selector thread.
+     */
+    public enum TransferMode {
+        COPY, ZERO_COPY
+    }
+
+    /**
+     * Number of worker selectors used by the reactor mode when none is given: one per available core.
+     */
+    public static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors();
+
     private static final String FILE_PATH = "audio.mp3";
     private static final int PORT = 12345;
+
     private final Selector selector;
     private final String path;
+    private TransferMode transferMode = TransferMode.COPY;
+    private int workerCount;
+    private MappedFileCache mappedFileCache;
+    private FlowControl flowControl = FlowControl.DEFAULT;
+    private Pacing pacing;
+    private TimerWheel timerWheel;
+    private BufferPool bufferPool = BufferPool.DEFAULT;
+    /**
+     * Assigned once, complete, by {@link #process()}: read by monitoring threads through {@link #getWorkers()}.
+     */
+    private volatile List<SelectorWorker> workers = List.of();
+    private volatile SelectorWorker acceptor;
+    private int nextWorker;
 
     public ServerAudio(String path) throws IOException {
         // Create a selector for handling multiple channels
@@ -24,16 +58,87 @@ public class ServerAudio {
         this.path = path;
     }
 
+    public ServerAudio transferMode(TransferMode transferMode) {
+        this.transferMode = transferMode;
+        return this;
+    }
+
+    /**
+     * Switches the server to the reactor mode: the selector of {@link #process()} only accepts connections
+     * and hands each accepted SocketChannel to one of {@code workerCount} worker selectors, each one running
+     * its own event loop on its own thread. Zero (the default) keeps a single selector for everything.
+     *
+     * @param workerCount The number of worker selectors, see {@link #DEFAULT_WORKERS}.
+     */
+    public ServerAudio workers(int workerCount) {
+        if (workerCount < 0)
+            throw new IllegalArgumentException("Worker count must not be negative");
+        this.workerCount = workerCount;
+        return this;
+    }
+
+    /**
+     * Streams PLAY from a shared memory-mapped copy of the file instead of reading it for every client,
+     * whatever the transfer mode. The same cache can be shared by several servers.
+     *
+     * @param mappedFileCache The cache, or null to read the file for every client (the default).
+     */
+    public ServerAudio mappedFileCache(MappedFileCache mappedFileCache) {
+        this.mappedFileCache = mappedFileCache;
+        return this;
+    }
+
+    /**
+     * Sets the watermarks bounding the bytes queued per client and the policy applied to slow consumers.
+     *
+     * @param flowControl The flow control settings, {@link FlowControl#DEFAULT} if not set.
+     */
+    public ServerAudio flowControl(FlowControl flowControl) {
+        this.flowControl = Objects.requireNonNull(flowControl, "Flow control cannot be null");
+        return this;
+    }
+
+    /**
+     * Sends the media at its bitrate plus a lead instead of as fast as the sockets accept it.
+     * The paced clients are woken up by one timer wheel shared by every worker.
+     *
+     * @param pacing The bitrate and lead, or null to send unpaced (the default).
+     */
+    public ServerAudio pacing(Pacing pacing) {
+        this.pacing = pacing;
+        return this;
+    }
+
+    /**
+     * Sets the pool of the direct buffers the clients are streamed from.
+     *
+     * @param bufferPool The pool, {@link BufferPool#DEFAULT} if not set.
+     */
+    public ServerAudio bufferPool(BufferPool bufferPool) {
+        this.bufferPool = Objects.requireNonNull(bufferPool, "Buffer pool cannot be null");
+        return this;
+    }
+
+    /**
+     * Returns the event loops of the server, with their connection counts and bytes sent,
+     * to check how the load is balanced. In single selector mode it is the acceptor loop only.
+     */
+    public List<SelectorWorker> getWorkers() {
+        return workers;
+    }
+
     public void process() {
         /**
          * - Create a ServerSocketChannel instance to handle server-side socket operations.
          *   ServerSocketChannel is a selectable channel for stream-oriented listening sockets.
-         * - Create a RandomAccessFile instance to read the audio file on the server.
-         *   RandomAccessFile allows reading from a file at a specified position.
-         *   The "r" mode opens the file for reading only.
+         * - Open a read-only FileChannel on the audio file.
+         *   The channel is shared by every client, but it is only used with positional reads and transfers,
+         *   which never move the channel position. Each client keeps its own cursor in its ClientSession,
+         *   so one client's PLAY or SEEK does not affect the stream of the others.
          */
+        Path mediaPath = Paths.get(path);
         try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
-             RandomAccessFile randomAccessFile = new RandomAccessFile(path, "r")) {
+             FileChannel fileChannel = FileChannel.open(mediaPath, StandardOpenOption.READ)) {
 
             /**
              * Bind the ServerSocketChannel to a specific port to listen for incoming client connections.
@@ -58,124 +163,73 @@ public class ServerAudio {
              */
             serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
 
-            ByteBuffer buffer = ByteBuffer.allocate(1024);
-            while (true) {
-                /**
-                 * When a client attempts to establish a connection, the select() method will return, and readyChannels will be greater than 0
-                 */
-                int readyChannels = selector.select();
-
-                if (readyChannels > 0) {
-                    Set<SelectionKey> selectedKeys = selector.selectedKeys();
-                    Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
-
-                    while (keyIterator.hasNext()) {
-                        SelectionKey key = keyIterator.next();
-
-                        /**
-                         * checks if ServerSocketChannel is ready to accept connections (if not might be network, resources issues or others)
-                         */
-                        if (key.isAcceptable()) {
-                            // Accept a new connection
-                            SocketChannel clientChannel = serverSocketChannel.accept();
-                            clientChannel.configureBlocking(false);
-                            clientChannel.register(selector, SelectionKey.OP_READ);
-
-                            System.out.println("Client connected: " + clientChannel.getRemoteAddress());
-
-                        } else if (key.isReadable()) {
-                            // Read from the client
-                            SocketChannel clientChannel = (SocketChannel) key.channel();
-                            int bytesRead = clientChannel.read(buffer);
-
-                            if (bytesRead == -1) {
-                                // Client disconnected
-                                key.cancel();
-                                clientChannel.close();
-                                System.out.println("Client disconnected");
-                            } else {
-                                buffer.flip(); // Prepare Buffer for reading from it
-                                processClientRequest(buffer, randomAccessFile, clientChannel);
-                                buffer.clear(); // Clear buffer for next iteration
-                            }
-                        }
-
-                        keyIterator.remove();
-                    }
-                }
+            if (pacing != null) {
+                timerWheel = new TimerWheel("audio-pacing");
             }
+            StreamHandler handler = new StreamHandler(this, mediaPath, fileChannel, transferMode, mappedFileCache,
+                    flowControl, pacing, timerWheel, bufferPool);
+            SelectorWorker acceptor = new SelectorWorker("audio-acceptor", selector, handler);
+            this.acceptor = acceptor;
+
+            /**
+             * In reactor mode every worker runs its own selector on its own thread, the acceptor only
+             * distributes new connections. Otherwise the acceptor loop also serves the clients.
+             */
+            List<SelectorWorker> eventLoops = new ArrayList<>();
+            if (workerCount == 0) {
+                eventLoops.add(acceptor);
+            }
+            for (int i = 0; i < workerCount; i++) {
+                eventLoops.add(new SelectorWorker("audio-worker-" + i, Selector.open(), handler));
+            }
+            workers = List.copyOf(eventLoops);
+            for (int i = 0; i < workerCount; i++) {
+                SelectorWorker worker = eventLoops.get(i);
+                Thread thread = new Thread(worker, worker.getName());
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            acceptor.run();
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private void processClientRequest(ByteBuffer buffer, RandomAccessFile randomAccessFile,
-                                      SocketChannel clientChannel) throws IOException {
-        // Process the client request based on the content of the ByteBuffer
-        // This is where commands such as "PLAY," "STOP," "SEEK," etc are handled.
-
-        byte[] data = new byte[buffer.remaining()];
-
-        // store the buffer data into the 'data' array
-        buffer.get(data);
-
-        String command = new String(data).trim(); // Trim to remove leading/trailing whitespaces
-
-        System.out.println("Received from client: " + command);
-
-        switch (command) {
-            case "PLAY":
-                playAudio(randomAccessFile, clientChannel);
-                break;
-            case "STOP":
-                // Implement STOP behavior (optional)
-                stopPlayback();
-                break;
-            case "SEEK":
-                // Read the next line, which should contain the position to seek
-                long position = Long.parseLong(readLine(buffer));
-                randomAccessFile.seek(position);
-                playAudio(randomAccessFile, clientChannel);
-                break;
-            case "CLOSE":
-                // Close the server (optional: close resources or take appropriate action)
-                closeServer();
-                break;
-            default:
-                System.out.println("Unknown command: " + command);
-        }
-    }
-
-    private void playAudio(RandomAccessFile randomAccessFile, SocketChannel clientChannel) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
-        int bytesRead;
-
-        while ((bytesRead = randomAccessFile.getChannel().read(buffer)) != -1) {
-            buffer.flip();
-            clientChannel.write(buffer);
-            buffer.clear();
+    /**
+     * Accepts a pending connection and hands it to the next worker, round-robin.
+     * Called by the acceptor loop when the ServerSocketChannel is ready to accept.
+     */
+    void accept(ServerSocketChannel serverSocketChannel) throws IOException {
+        SocketChannel clientChannel = serverSocketChannel.accept();
+        if (clientChannel == null) {
+            return;
         }
-    }
+        clientChannel.configureBlocking(false);
 
-    private void stopPlayback() {
-        //TODO Implement STOP behavior
-        System.out.println("Playback stopped");
-    }
+        List<SelectorWorker> workers = this.workers;
+        SelectorWorker worker = workers.get(nextWorker);
+        nextWorker = (nextWorker + 1) % workers.size();
+        worker.register(clientChannel);
 
-    private static String readLine(ByteBuffer buffer) {
-        StringBuilder line = new StringBuilder();
-        char currentChar;
-        while (buffer.hasRemaining() && (currentChar = (char) buffer.get()) != '\n') {
-            line.append(currentChar);
-        }
-        return line.toString();
+        System.out.println("Client connected: " + clientChannel.getRemoteAddress() + " -> " + worker.getName());
     }
 
-    private void closeServer() throws IOException {
+    void closeServer() throws IOException {
         // Close the server (optional: close resources or take appropriate action)
         System.out.println("Server is closing");
-        selector.close();
+        SelectorWorker acceptor = this.acceptor;
+        if (acceptor != null) {
+            acceptor.close();
+        } else {
+            selector.close();
+        }
+        for (SelectorWorker worker : workers) {
+            worker.close();
+        }
+        if (timerWheel != null) {
+            timerWheel.close();
+        }
     }
 }
-
@@ -0,0 +1,330 @@
+package com.example.nio.media;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handles the commands and the audio transfer of the client connections of {@link ServerAudio}.
+ * <p>
+ * One instance is shared by every {@link SelectorWorker}. It keeps no per-client state itself, that lives in the
+ * ClientSession attached to each SelectionKey, and it only uses positional operations on the shared FileChannel,
+ * so the workers can call it concurrently.
+ */
+class StreamHandler {
+
+    /**
+     * Upper bound of bytes sent to one client per write readiness, so one client
+     * cannot monopolize the selector thread while the others wait.
+     */
+    private static final long TRANSFER_CHUNK = 256 * 1024;
+
+    private static final long PACING_MIN_QUANTUM = 1024;
+
+    private final ServerAudio server;
+    private final Path path;
+    private final FileChannel fileChannel;
+    private final ServerAudio.TransferMode transferMode;
+    private final MappedFileCache mappedFileCache;
+    private final FlowControl flowControl;
+    private final Pacing pacing;
+    private final TimerWheel timerWheel;
+    private final BufferPool bufferPool;
+
+    StreamHandler(ServerAudio server, Path path, FileChannel fileChannel, ServerAudio.TransferMode transferMode,
+                  MappedFileCache mappedFileCache, FlowControl flowControl, Pacing pacing, TimerWheel timerWheel,
+                  BufferPool bufferPool) {
+        this.server = server;
+        this.path = path;
+        this.fileChannel = fileChannel;
+        this.transferMode = transferMode;
+        this.mappedFileCache = mappedFileCache;
+        this.flowControl = flowControl;
+        this.pacing = pacing;
+        this.timerWheel = timerWheel;
+        this.bufferPool = bufferPool;
+    }
+
+    ServerAudio getServer() {
+        return server;
+    }
+
+    ClientSession newSession(SelectorWorker worker) {
+        return new ClientSession(flowControl, bufferPool, worker);
+    }
+
+    /**
+     * Handles every complete command frame received so far by the client.
+     * A frame that is not complete yet stays in the parser until the next read.
+     */
+    void processClientRequest(SelectionKey key) throws IOException {
+        // This is where commands such as "PLAY," "STOP," "SEEK," etc are handled.
+        ClientSession session = (ClientSession) key.attachment();
+        CommandParser parser = session.getCommandParser();
+
+        Command command;
+        while (key.isValid() && (command = parser.next()) != null) {
+            System.out.println("Received from client: " + command);
+
+            switch (command) {
+                case PLAY:
+                    playAudio(key);
+                    break;
+                case STOP:
+                    stopPlayback(key);
+                    break;
+                case PAUSE:
+                    pausePlayback(key);
+                    break;
+                case RESUME:
+                    resumePlayback(key);
+                    break;
+                case SEEK:
+                    // The payload holds the position to seek to
+                    long position = parser.getPayload().getLong();
+                    if (position < 0)
+                        throw new ProtocolException("Seek position must not be negative: " + position);
+                    session.seek(position);
+                    playAudio(key);
+                    break;
+                case CLOSE:
+                    // Close the server (optional: close resources or take appropriate action)
+                    server.closeServer();
+                    return;
+            }
+        }
+    }
+
+    private void playAudio(SelectionKey key) throws IOException {
+        ClientSession session = (ClientSession) key.attachment();
+
+        /**
+         * With a mapped file cache the client streams from the shared mapping of the file,
+         * looked up on every PLAY so a modified file gets mapped again.
+         */
+        if (mappedFileCache != null) {
+            session.setMappedFile(mappedFileCache.get(path));
+        }
+
+        // A client that already reached the end of the file starts over
+        if (session.getPosition() >= mediaSize(session)) {
+            session.seek(0);
+        }
+
+        /**
+         * Only mark the session as playing, the bytes are pushed by streamAudio
+         * whenever the socket reports OP_WRITE readiness.
+         */
+        session.setState(ClientSession.PlaybackState.PLAYING);
+        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    private void stopPlayback(SelectionKey key) {
+        ClientSession session = (ClientSession) key.attachment();
+
+        // Back to the beginning, the queued bytes are dropped
+        session.setState(ClientSession.PlaybackState.STOPPED);
+        session.seek(0);
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        System.out.println("Playback stopped");
+    }
+
+    private void pausePlayback(SelectionKey key) {
+        ClientSession session = (ClientSession) key.attachment();
+        if (!session.isPlaying()) {
+            return;
+        }
+
+        // The cursor and the queued bytes are kept for RESUME
+        session.setState(ClientSession.PlaybackState.PAUSED);
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        System.out.println("Playback paused at position: " + session.getPosition());
+    }
+
+    private void resumePlayback(SelectionKey key) {
+        ClientSession session = (ClientSession) key.attachment();
+        if (session.getState() != ClientSession.PlaybackState.PAUSED) {
+            return;
+        }
+
+        session.setState(ClientSession.PlaybackState.PLAYING);
+        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Continues the transfer of a playing client from its own position, called on OP_WRITE readiness.
+     *
+     * @return The number of bytes written to the client.
+     */
+    long streamAudio(SelectionKey key) throws IOException {
+        ClientSession session = (ClientSession) key.attachment();
+        SocketChannel clientChannel = (SocketChannel) key.channel();
+        long size = mediaSize(session);
+        long written = 0;
+
+        // The file position the client may not go past yet, the end of the media when not paced
+        long limit = pacing == null ? size : Math.min(size, session.getPacingLimit(pacing, System.nanoTime()));
+
+        if (session.isPlaying()) {
+            if (transferMode == ServerAudio.TransferMode.ZERO_COPY && session.getMappedFile() == null) {
+                written = transferAudio(fileChannel, session, clientChannel, limit);
+            } else {
+                written = writeQueued(session, clientChannel, limit);
+            }
+        }
+        if (written > 0) {
+            session.progress();
+        }
+
+        if (!session.isPlaying() || session.isFinished(size)) {
+            // Nothing left to send, stop listening for write readiness
+            if (session.isPlaying()) {
+                session.setState(ClientSession.PlaybackState.STOPPED);
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            System.out.println("Playback finished at position: " + session.getPosition());
+
+        } else if (session.getPosition() >= limit && session.getOutboundQueue().isEmpty()) {
+            // Ahead of real time by the whole lead: wait for the pacing instead of the socket
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            schedulePacingWakeUp(key, session, limit);
+        }
+        return written;
+    }
+
+    /**
+     * Schedules the OP_WRITE interest of a paced client back on the shared timer wheel,
+     * for when the playback has made room for more bytes.
+     */
+    private void schedulePacingWakeUp(SelectionKey key, ClientSession session, long limit) {
+        if (!session.schedulePacingWakeUp()) {
+            return;
+        }
+
+        // Wake up once a quarter of the lead was played, so the client's lead never runs much lower
+        long quantum = Math.max(PACING_MIN_QUANTUM, Math.min(OutboundQueue.CHUNK_SIZE, pacing.getLeadBytes() / 4));
+        long missingBytes = session.getPosition() + quantum - limit;
+        long delayNanos = TimeUnit.SECONDS.toNanos(missingBytes) / pacing.getBytesPerSecond();
+
+        // The timer thread only hands the wake up over, the session is touched by its own worker
+        timerWheel.schedule(() -> session.getWorker().execute(() -> {
+            session.pacingWakeUpDone();
+            if (key.isValid() && session.isPlaying()) {
+                session.progress();
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Applies the slow consumer policy to a client whose socket accepted nothing for too long.
+     * Only clients waiting for write readiness are considered, not the ones waiting for the pacing.
+     *
+     * @return true if the client must be disconnected.
+     */
+    boolean isSlowConsumerToDrop(SelectionKey key, long nowNanos) {
+        ClientSession session = (ClientSession) key.attachment();
+        if ((key.interestOps() & SelectionKey.OP_WRITE) == 0
+                || !session.isStalledFor(TimeUnit.MILLISECONDS.toNanos(flowControl.getMaxStallMillis()), nowNanos)) {
+            return false;
+        }
+
+        if (flowControl.getSlowConsumerPolicy() == FlowControl.SlowConsumerPolicy.DROP) {
+            System.out.println("Dropping slow consumer, queued bytes: " + session.getOutboundQueue().getQueuedBytes());
+            return true;
+        }
+
+        // Nothing more is read for the client until its queue drains, log it once per stall
+        if (session.markStalled()) {
+            System.out.println("Throttling slow consumer, queued bytes: " + session.getOutboundQueue().getQueuedBytes());
+        }
+        return false;
+    }
+
+    private long mediaSize(ClientSession session) throws IOException {
+        return session.getMappedFile() != null ? session.getMappedFile().size() : fileChannel.size();
+    }
+
+    private long writeQueued(ClientSession session, SocketChannel clientChannel, long limit) throws IOException {
+        OutboundQueue queue = session.getOutboundQueue();
+        long written = 0;
+
+        while (written < TRANSFER_CHUNK) {
+            // Refill the queue from the client's cursor, unless it is above its high watermark
+            while (queue.isWritable() && session.getPosition() < limit) {
+                if (!produce(session, queue, limit)) {
+                    break;
+                }
+            }
+
+            written += queue.writeTo(clientChannel);
+
+            // Either nothing is left to send yet, or the socket send buffer is full and the queued bytes
+            // wait for the next OP_WRITE readiness
+            if (!queue.isEmpty() || session.getPosition() >= limit) {
+                return written;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Queues the next chunk of the media from the client's cursor, without going past the limit.
+     *
+     * @return false if nothing could be read.
+     */
+    private boolean produce(ClientSession session, OutboundQueue queue, long limit) throws IOException {
+        int length = (int) Math.min(OutboundQueue.CHUNK_SIZE, limit - session.getPosition());
+
+        MappedFileCache.MappedFile mappedFile = session.getMappedFile();
+        if (mappedFile != null) {
+            // A duplicate() view of the mapped segment, queued without copying a byte
+            ByteBuffer view = mappedFile.slice(session.getPosition());
+            view.limit(Math.min(view.limit(), view.position() + length));
+            session.advance(view.remaining());
+            queue.add(view);
+            return true;
+        }
+
+        /**
+         * Positional read: fills a chunk of the session's own queue from the session's own offset,
+         * leaving the shared channel position untouched. The chunk is a pooled direct buffer,
+         * the bytes go from the file to the socket without passing through the heap.
+         */
+        ByteBuffer chunk = queue.allocateChunk();
+        chunk.limit(length);
+        int bytesRead = fileChannel.read(chunk, session.getPosition());
+        if (bytesRead <= 0) {
+            queue.recycle(chunk);
+            return false;
+        }
+        chunk.flip();
+        session.advance(bytesRead);
+        queue.add(chunk);
+        return true;
+    }
+
+    private static long transferAudio(FileChannel fileChannel, ClientSession session,
+                                      SocketChannel clientChannel, long limit) throws IOException {
+        if (session.getPosition() >= limit) {
+            return 0;
+        }
+
+        /**
+         * transferTo does not change the position of the file channel, so the same channel
+         * can serve every client, each one from its own position.
+         * It may transfer fewer bytes than requested when the socket send buffer is full,
+         * the rest is sent on the next OP_WRITE readiness.
+         * The socket send buffer is the only queue of this mode, so it needs no OutboundQueue.
+         */
+        long count = Math.min(limit - session.getPosition(), TRANSFER_CHUNK);
+        long transferred = fileChannel.transferTo(session.getPosition(), count, clientChannel);
+        session.advance(transferred);
+        return transferred;
+    }
+}
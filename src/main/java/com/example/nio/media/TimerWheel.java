@@ -0,0 +1,155 @@
+package com.example.nio.media;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A hashed timer wheel: one thread runs the delayed tasks of any number of clients.
+ * <p>
+ * Time is divided in ticks, and the wheel in as many buckets. A task goes to the bucket of its deadline tick,
+ * together with the number of full turns of the wheel left before it is due. Every tick the thread only looks
+ * at one bucket, so scheduling and expiring are O(1) whatever the number of pending tasks, where a sleeping
+ * thread or a scheduled executor entry per client would not scale to thousands of sessions.
+ * <p>
+ * Tasks run on the timer thread, a tick late at most: they must be short, typically handing work over to
+ * the thread that owns the state. Tasks can be scheduled from any thread.
+ */
+public final class TimerWheel implements AutoCloseable {
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+    private final ArrayDeque<Timeout>[] wheel;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final LongSupplier clock;
+    private final Thread thread;
+    private final long startNanos;
+
+    private volatile boolean running = true;
+    private long tick;
+
+    public TimerWheel(String name) {
+        this(name, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    public TimerWheel(String name, long tickMillis, int wheelSize) {
+        this(name, tickMillis, wheelSize, System::nanoTime);
+    }
+
+    /**
+     * A wheel without a thread when the name is null, whose ticks only run when {@link #advance()} is called.
+     *
+     * @param clock The current time in nanoseconds.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(String name, long tickMillis, int wheelSize, LongSupplier clock) {
+        if (tickMillis <= 0)
+            throw new IllegalArgumentException("Tick must be a positive value");
+        if (wheelSize <= 0)
+            throw new IllegalArgumentException("Wheel size must be a positive value");
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+
+        this.clock = clock;
+        this.startNanos = clock.getAsLong();
+        if (name == null) {
+            this.thread = null;
+            return;
+        }
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Runs the task on the timer thread once the delay has elapsed.
+     */
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running)
+            throw new IllegalStateException("Timer wheel is closed");
+        pendingTimeouts.add(new Timeout(task, clock.getAsLong() + unit.toNanos(Math.max(delay, 0))));
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Runs the ticks ended by now, and returns the time left until the end of the current one.
+     */
+    long advance() {
+        long now = clock.getAsLong();
+        while (startNanos + (tick + 1) * tickNanos <= now) {
+            addPendingTimeouts();
+            expire(wheel[(int) (tick % wheel.length)]);
+            tick++;
+        }
+        return startNanos + (tick + 1) * tickNanos - now;
+    }
+
+    private void run() {
+        while (running) {
+            // Sleep until the end of the current tick
+            long sleepNanos = advance();
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void addPendingTimeouts() {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            // A deadline already passed goes to the current tick
+            long deadlineTick = Math.max((timeout.deadlineNanos - startNanos) / tickNanos, tick);
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            wheel[(int) (deadlineTick % wheel.length)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                continue;
+            }
+
+            iterator.remove();
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                // One failing task must not stop the timer of every other client
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static final class Timeout {
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.io;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class AsyncFileReaderTests {
+
+    @Value("classpath:roman_empire_history.txt")
+    Resource resource;
+
+    @Test
+    void test() throws Exception {
+        // Chunks of 100 bytes, 4 of them read ahead
+        AsyncFileReader reader = new AsyncFileReader(100, 4, resource.getFile().getPath());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        CompletableFuture<Void> done = reader.perform(chunk -> {
+            byte[] bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            content.write(bytes, 0, bytes.length);
+        });
+        done.get(10, TimeUnit.SECONDS);
+
+        assertArrayEquals(Files.readAllBytes(resource.getFile().toPath()), content.toByteArray());
+        System.err.println("reading bytes (async): " + content.size());
+    }
+
+    @Test
+    void testBackpressure() throws Exception {
+        AsyncFileReader reader = new AsyncFileReader(100, 4, resource.getFile().getPath());
+        AtomicInteger chunks = new AtomicInteger();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicReference<String> lateSignal = new AtomicReference<>();
+        CountDownLatch cancelling = new CountDownLatch(1);
+
+        reader.subscribe(new TestSubscriber() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription = s;
+                s.request(2);
+            }
+
+            @Override
+            public void onNext(ByteBuffer chunk) {
+                assertTrue(chunk.isReadOnly());
+                if (cancelled.get()) {
+                    lateSignal.compareAndSet(null, "onNext");
+                }
+                // Only the requested chunks are delivered: the second one is the last before cancelling
+                if (chunks.incrementAndGet() == 2) {
+                    cancelled.set(true);
+                    subscription.cancel();
+                    subscription.request(10);
+                    cancelling.countDown();
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                lateSignal.compareAndSet(null, "onError " + throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                lateSignal.compareAndSet(null, "onComplete");
+            }
+        });
+
+        // Signals are serialized: the loop delivering the second chunk sees the cancellation before anything else
+        assertTrue(cancelling.await(10, TimeUnit.SECONDS));
+        assertEquals(2, chunks.get());
+        assertNull(lateSignal.get());
+    }
+
+    @Test
+    void testInvalidRequest() throws Exception {
+        AsyncFileReader reader = new AsyncFileReader(100, 4, resource.getFile().getPath());
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+
+        reader.subscribe(new TestSubscriber() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(0);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.complete(throwable);
+            }
+        });
+        assertInstanceOf(IllegalArgumentException.class, error.get(10, TimeUnit.SECONDS));
+
+        // A missing file is signalled to the subscriber as well
+        CompletableFuture<Void> done = new AsyncFileReader(100, 4, "missing.txt").perform(chunk -> {
+        });
+        assertTrue(done.isCompletedExceptionally());
+    }
+
+    private abstract static class TestSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
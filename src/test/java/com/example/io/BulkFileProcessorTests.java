@@ -0,0 +1,68 @@
+package com.example.io;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class BulkFileProcessorTests {
+
+    @Test
+    void test() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("bulk");
+        try {
+            List<Path> paths = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                paths.add(Files.writeString(directory.resolve("file-" + i + ".txt"), "line " + i + "\n"));
+            }
+            paths.add(directory.resolve("missing.txt"));
+
+            // Every file read by FileReaderInputStream, at most 8 at a time
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            BulkFileProcessor processor = new BulkFileProcessor(8);
+            BulkFileProcessor.BulkResult<Long> result = processor.process(paths, path -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    long[] bytes = {0};
+                    new FileReaderInputStream(1024, path.toString()).perform(chunk -> bytes[0] += chunk.length);
+                    return bytes[0];
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+
+            assertEquals(paths.size(), result.results().size());
+            assertEquals(500, result.succeeded().size());
+            assertTrue(maxRunning.get() <= 8);
+            for (int i = 0; i < 500; i++) {
+                assertEquals(paths.get(i), result.results().get(i).path());
+                assertEquals(Files.size(paths.get(i)), result.results().get(i).result().longValue());
+            }
+            assertInstanceOf(FileNotFoundException.class, result.failed().get(0).error());
+            System.err.println("bulk read: " + result.succeeded().size() + " files in " + result.elapsed());
+
+            // The directory, walked
+            assertEquals(500, processor.process(directory, Files::size).succeeded().size());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}
@@ -7,6 +7,21 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.Resource;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SpringBootTest
 class CharacterStreamTests {
@@ -22,4 +37,107 @@ class CharacterStreamTests {
         characterStreamReader.perform(System.err::println);
         characterStreamReader.performEnhanced(System.err::println);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testLines() throws IOException {
+        Path path = inputResource.getFile().toPath();
+        FileReaderCharacterStream characterStreamReader = new FileReaderCharacterStream(10, path.toString());
+
+        // The line view is reused, each line is copied to be kept
+        List<String> lines = new ArrayList<>();
+        characterStreamReader.performLines(StandardCharsets.UTF_8, line -> lines.add(line.toString()));
+        assertEquals(Files.readAllLines(path, StandardCharsets.UTF_8), lines);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> characterStreamReader.performLines(StandardCharsets.UTF_16, System.err::println));
+    }
+
+    @Test
+    void testParallelLines() throws IOException {
+        // The text repeated with CRLF and non-ASCII lines, split into ranges of a few hundred bytes
+        Path path = Files.createTempFile("lines", ".txt");
+        try {
+            String text = Files.readString(inputResource.getFile().toPath(), StandardCharsets.UTF_8);
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                content.append(i).append(" Imperium Romanum \u00e0 \u20ac\r\n").append(text);
+            }
+            Files.writeString(path, content, StandardCharsets.UTF_8);
+
+            FileReaderCharacterStream characterStreamReader = new FileReaderCharacterStream(10, path.toString());
+            try (Stream<CharSequence> lines = characterStreamReader.lines(StandardCharsets.UTF_8, 256)) {
+                List<String> parallelLines = lines.parallel().map(CharSequence::toString).collect(Collectors.toList());
+                assertEquals(Files.readAllLines(path, StandardCharsets.UTF_8), parallelLines);
+                System.err.println("lines (parallel): " + parallelLines.size());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void testDirect() throws IOException {
+        Path path = Files.createTempFile("chars", ".txt");
+        try {
+            String text = Files.readString(inputResource.getFile().toPath(), StandardCharsets.UTF_8)
+                    + "Imperium Romanum \u00e0 \u20ac \ud83c\udfdb\n";
+            Files.writeString(path, text, StandardCharsets.UTF_8);
+
+            // Chunks of 10 chars cut the multi-byte sequences, both with the UTF-8 fast path and a CharsetDecoder
+            FileReaderCharacterStream characterStreamReader = new FileReaderCharacterStream(10, path.toString());
+            StringBuilder content = new StringBuilder();
+            characterStreamReader.performDirect(StandardCharsets.UTF_8, content::append);
+            assertEquals(text, content.toString());
+
+            content.setLength(0);
+            characterStreamReader.performDirect(StandardCharsets.ISO_8859_1, content::append);
+            assertEquals(new String(Files.readAllBytes(path), StandardCharsets.ISO_8859_1), content.toString());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void testPublisher() throws Exception {
+        Path path = inputResource.getFile().toPath();
+        FileReaderCharacterStream characterStreamReader = new FileReaderCharacterStream(10, path.toString());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Two chunks requested at a time
+            StringBuilder content = new StringBuilder();
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            characterStreamReader.publisher(StandardCharsets.UTF_8, executor).subscribe(new Flow.Subscriber<>() {
+                private Flow.Subscription subscription;
+                private int received;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(2);
+                }
+
+                @Override
+                public void onNext(CharSequence chunk) {
+                    content.append(chunk);
+                    if (++received % 2 == 0) {
+                        subscription.request(2);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    done.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    done.complete(null);
+                }
+            });
+            done.get(10, TimeUnit.SECONDS);
+            assertEquals(Files.readString(path, StandardCharsets.UTF_8), content.toString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
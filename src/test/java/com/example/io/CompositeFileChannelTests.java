@@ -0,0 +1,118 @@
+package com.example.io;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class CompositeFileChannelTests {
+
+    @Value("classpath:roman_empire_history.txt")
+    Resource resource;
+
+    @Test
+    void testTransferTo() throws IOException {
+        Path path = resource.getFile().toPath();
+        byte[] content = Files.readAllBytes(path);
+        Path target = Files.createTempFile("composite", ".txt");
+
+        try (CompositeFileChannel channel = new CompositeFileChannel()
+                .addFile(path)
+                .addRange(path, 100, 0)
+                .addRange(path, 100, 200);
+             FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            assertEquals(content.length + 200, channel.size());
+
+            // File to file, without copying the bytes to the heap
+            long transferred = 0;
+            while (transferred < channel.size()) {
+                transferred += channel.transferTo(transferred, channel.size() - transferred, targetChannel);
+            }
+            System.err.println("Transferred " + transferred + " bytes of " + channel);
+        } finally {
+            byte[] written = Files.readAllBytes(target);
+            Files.delete(target);
+            assertArrayEquals(expected(content), written);
+        }
+    }
+
+    @Test
+    void testWriteTo() throws IOException {
+        Path path = resource.getFile().toPath();
+        byte[] content = Files.readAllBytes(path);
+
+        Path target = Files.createTempFile("composite", ".txt");
+
+        try (CompositeFileChannel channel = new CompositeFileChannel()
+                .addFile(path)
+                .addRange(path, 100, 200);
+             FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            // Gathering writes of the mapped segments
+            assertEquals(channel.size(), channel.writeTo(0, channel.size(), targetChannel));
+        } finally {
+            byte[] written = Files.readAllBytes(target);
+            Files.delete(target);
+            assertArrayEquals(expected(content), written);
+        }
+    }
+
+    @Test
+    void testRead() throws IOException {
+        Path path = resource.getFile().toPath();
+        byte[] content = Files.readAllBytes(path);
+        byte[] expected = expected(content);
+
+        try (CompositeFileChannel channel = new CompositeFileChannel()
+                .addFile(path)
+                .addRange(path, 100, 200)) {
+            // Sequential reads across the end of a segment
+            assertArrayEquals(expected, Channels.newInputStream(channel).readAllBytes());
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+
+            // Random access: the last 10 bytes of the file and the first 10 bytes of the range, at once
+            ByteBuffer buffer = ByteBuffer.allocate(20);
+            channel.position(content.length - 10);
+            while (buffer.hasRemaining()) {
+                channel.read(buffer);
+            }
+            assertArrayEquals(Arrays.copyOfRange(expected, content.length - 10, content.length + 10), buffer.array());
+
+            // Scattering read
+            ByteBuffer first = ByteBuffer.allocate(50);
+            ByteBuffer second = ByteBuffer.allocate(50);
+            channel.position(content.length + 100);
+            assertEquals(100, channel.read(new ByteBuffer[]{first, second}));
+            assertArrayEquals(Arrays.copyOfRange(content, 200, 250), first.array());
+            assertArrayEquals(Arrays.copyOfRange(content, 250, 300), second.array());
+
+            assertThrows(NonWritableChannelException.class, () -> channel.write(ByteBuffer.allocate(1)));
+            assertThrows(IllegalArgumentException.class, () -> channel.addRange(path, content.length, 1));
+            // A count whose sum with the position overflows
+            assertThrows(IllegalArgumentException.class, () -> channel.addRange(path, 1, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * The whole file followed by its bytes 100 to 300.
+     */
+    private static byte[] expected(byte[] content) {
+        byte[] expected = Arrays.copyOf(content, content.length + 200);
+        System.arraycopy(content, 100, expected, content.length, 200);
+        return expected;
+    }
+}
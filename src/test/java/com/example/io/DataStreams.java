@@ -4,6 +4,18 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
 public class DataStreams {
@@ -56,4 +68,198 @@ public class DataStreams {
             throw e;
         }
     }
+
+    /**
+     * Writes the employees of the test above, and a million more, to a RecordFile instead: reading one employee or
+     * summing the salaries does not decode the rows before it, unlike data.bin which must be read from the start.
+     */
+    @Test
+    void testRecordFile() throws IOException {
+        Path path = Files.createTempFile("employees", ".rcf");
+        int rows = 1_000_001;
+        RecordFile.Schema schema = new RecordFile.Schema()
+                .addInt("EmployeeID")
+                .addString("Name")
+                .addDouble("Salary");
+
+        try (RecordFileWriter writer = RecordFile.create(path, schema)) {
+            writer.writeInt(1).writeString("John Doe").writeDouble(50000.0);
+            writer.writeInt(2).writeString("Jane Smith").writeDouble(60000.0);
+            for (int i = 3; i <= rows; i++) {
+                writer.writeInt(i).writeString(i % 1000 == 0 ? null : "Employee " + i % 100).writeDouble(i);
+            }
+        }
+
+        try (RecordFile file = RecordFile.open(path)) {
+            int id = file.getSchema().indexOf("EmployeeID");
+            int name = file.getSchema().indexOf("Name");
+            int salary = file.getSchema().indexOf("Salary");
+            assertEquals(rows, file.getRowCount());
+
+            assertEquals(1, file.getInt(0, id));
+            assertEquals("John Doe", file.getString(0, name));
+            assertEquals(60000.0, file.getDouble(1, salary));
+            long row = rows - 1;
+            assertEquals(rows, file.getInt(row, id));
+            assertEquals("Employee " + rows % 100, file.getString(row, name));
+            assertNull(file.getString(999, name));
+            // Two names and 100 generated ones
+            assertEquals(102, file.getDictionarySize(name));
+
+            double total = file.sumDouble(salary);
+            assertEquals(50000.0 + 60000.0 + ((double) rows * (rows + 1) / 2 - 3), total);
+
+            long[] sum = new long[1];
+            file.forEachInt(id, value -> sum[0] += value);
+            assertEquals((long) rows * (rows + 1) / 2, sum[0]);
+
+            assertThrows(IllegalArgumentException.class, () -> file.getInt(0, salary));
+            assertThrows(IndexOutOfBoundsException.class, () -> file.getInt(rows, id));
+
+            // Windows of a few pages, and windows smaller than a page: the same values
+            for (int windowSize : new int[]{1024 * 1024, 4096}) {
+                try (RecordFile windowed = RecordFile.open(path, windowSize)) {
+                    assertEquals(total, windowed.sumDouble(salary));
+                    assertEquals("Employee " + rows % 100, windowed.getString(row, name));
+                    assertNull(windowed.getString(999, name));
+                    long[] windowedSum = new long[1];
+                    windowed.forEachInt(id, value -> windowedSum[0] += value);
+                    assertEquals(sum[0], windowedSum[0]);
+                }
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Writes the employees of the first test with a DataRecordWriter, and reads them back with a DataInputStream.
+     */
+    @Test
+    void testDataRecordWriter() throws IOException {
+        Path path = Files.createTempFile("data", ".bin");
+        String[] names = {"John Doe", "Jérôme Müller", "李小龍", "nul\0char", "\uD83D\uDE00", "李小龍 Jérôme\0".repeat(5),
+                "x".repeat(70_000)};
+        // A buffer smaller than some of the strings
+        try (DataRecordWriter writer = new DataRecordWriter(FileChannel.open(path, StandardOpenOption.WRITE), 16)) {
+            for (int i = 0; i < names.length; i++) {
+                writer.writeInt(i);
+                if (names[i].length() > 65535) {
+                    String name = names[i];
+                    assertThrows(UTFDataFormatException.class, () -> writer.writeUTF(name));
+                    writer.writeUTF(name.substring(0, 30_000));
+                } else {
+                    writer.writeUTF(names[i]);
+                }
+                writer.writeDouble(50000.0 + i);
+            }
+            writer.force();
+            assertEquals(Files.size(path), writer.getSize());
+        }
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile())))) {
+            for (int i = 0; i < names.length; i++) {
+                assertEquals(i, dis.readInt());
+                assertEquals(names[i].length() > 65535 ? names[i].substring(0, 30_000) : names[i], dis.readUTF());
+                assertEquals(50000.0 + i, dis.readDouble());
+            }
+            assertEquals(-1, dis.read());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Appends employees from many threads to a GroupCommitLog: every record is durable once its future completes,
+     * and the records of concurrent producers share the writes and forces.
+     */
+    @Test
+    void testGroupCommitLog() throws Exception {
+        Path path = Files.createTempFile("employees", ".log");
+        int threads = 32;
+        int records = 500;
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+
+        long batches;
+        try (GroupCommitLog log = new GroupCommitLog(path);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<CompletableFuture<Long>>>> producers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                producers.add(executor.submit(() -> {
+                    List<CompletableFuture<Long>> appended = new ArrayList<>();
+                    for (int i = 0; i < records; i++) {
+                        int id = thread * records + i;
+                        appended.add(log.append(out -> {
+                            out.writeInt(id);
+                            out.writeUTF("Employee " + id);
+                            out.writeDouble(id * 10.0);
+                        }));
+                    }
+                    // Durable before moving on
+                    CompletableFuture.allOf(appended.toArray(CompletableFuture[]::new)).join();
+                    return appended;
+                }));
+            }
+            for (Future<List<CompletableFuture<Long>>> producer : producers) {
+                futures.addAll(producer.get());
+            }
+            batches = log.getBatchCount();
+        }
+        assertTrue(batches < threads * records);
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile())))) {
+            // Every record at the offset of its future
+            boolean[] seen = new boolean[threads * records];
+            long offset = 0;
+            for (int i = 0; i < threads * records; i++) {
+                int id = dis.readInt();
+                assertEquals("Employee " + id, dis.readUTF());
+                assertEquals(id * 10.0, dis.readDouble());
+                assertEquals(offset, (long) futures.get(id).join());
+                assertFalse(seen[id]);
+                seen[id] = true;
+                offset += Integer.BYTES + Short.BYTES + ("Employee " + id).length() + Double.BYTES;
+            }
+            assertEquals(-1, dis.read());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * An encoder runs outside of the lock of the log: the records it appends itself come before its own, whole.
+     */
+    @Test
+    void testGroupCommitLogReentrant() throws Exception {
+        Path path = Files.createTempFile("employees", ".log");
+        try {
+            CompletableFuture<Long> inner;
+            CompletableFuture<Long> outer;
+            try (GroupCommitLog log = new GroupCommitLog(path)) {
+                List<CompletableFuture<Long>> appended = new ArrayList<>();
+                outer = log.append(out -> {
+                    out.writeInt(1);
+                    appended.add(log.append(new byte[]{0, 0, 0, 2}));
+                    out.writeInt(3);
+                });
+                inner = appended.get(0);
+                assertThrows(IOException.class, () -> log.append(out -> {
+                    out.writeInt(4);
+                    throw new IOException("Encoding failed");
+                }));
+            }
+
+            assertEquals(0, (long) inner.join());
+            assertEquals(4, (long) outer.join());
+            try (DataInputStream dis = new DataInputStream(new FileInputStream(path.toFile()))) {
+                assertEquals(2, dis.readInt());
+                assertEquals(1, dis.readInt());
+                assertEquals(3, dis.readInt());
+                assertEquals(-1, dis.read());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
 }
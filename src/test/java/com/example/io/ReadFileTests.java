@@ -6,7 +6,23 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.Resource;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 class ReadFileTests {
@@ -21,4 +37,130 @@ class ReadFileTests {
         readFile.perform(bytes -> System.err.println("reading bytes (not enhanced): " + new String(bytes)));
         readFile.performEnhanced(bytes -> System.err.println("reading bytes (enhanced): " + new String(bytes)));
     }
+
+    @Test
+    void testDirect() throws IOException {
+        FileReaderInputStream readFile = new FileReaderInputStream(1024, resource.getFile().getPath());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        // Twice, the second read reuses the buffer of the first one
+        for (int i = 0; i < 2; i++) {
+            content.reset();
+            readFile.performDirect(buffer -> {
+                assertTrue(buffer.isReadOnly());
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                content.write(bytes, 0, bytes.length);
+            });
+            assertArrayEquals(Files.readAllBytes(resource.getFile().toPath()), content.toByteArray());
+        }
+        System.err.println("reading bytes (direct): " + content.size());
+    }
+
+    @Test
+    void testParallel() throws IOException {
+        FileReaderInputStream readFile = new FileReaderInputStream(1024, resource.getFile().getPath());
+        String expected = Files.readString(resource.getFile().toPath(), StandardCharsets.ISO_8859_1);
+
+        // Small windows and ranges, so the file spans several of both
+        String content = readFile.performParallel(ForkJoinPool.commonPool(), 4096, 100, buffer -> {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }, String::concat);
+        assertEquals(expected, content);
+
+        long lines = readFile.performParallel(buffer -> {
+            long count = 0;
+            while (buffer.hasRemaining()) {
+                if (buffer.get() == '\n') {
+                    count++;
+                }
+            }
+            return count;
+        }, Long::sum);
+        assertEquals(expected.chars().filter(c -> c == '\n').count(), lines);
+        System.err.println("reading lines (parallel): " + lines);
+    }
+
+    @Test
+    void testPublisher() throws Exception {
+        FileReaderInputStream readFile = new FileReaderInputStream(100, resource.getFile().getPath());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // One chunk requested at a time
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            readFile.publisher(executor).subscribe(new Flow.Subscriber<>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(ByteBuffer chunk) {
+                    byte[] bytes = new byte[chunk.remaining()];
+                    chunk.get(bytes);
+                    content.write(bytes, 0, bytes.length);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    done.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    done.complete(null);
+                }
+            });
+            done.get(10, TimeUnit.SECONDS);
+            assertArrayEquals(Files.readAllBytes(resource.getFile().toPath()), content.toByteArray());
+
+            // Cancelled after the first chunk, nothing more is delivered
+            AtomicInteger chunks = new AtomicInteger();
+            AtomicInteger terminalSignals = new AtomicInteger();
+            CountDownLatch firstChunk = new CountDownLatch(1);
+            readFile.publisher(executor).subscribe(new Flow.Subscriber<>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(5);
+                }
+
+                @Override
+                public void onNext(ByteBuffer chunk) {
+                    chunks.incrementAndGet();
+                    subscription.cancel();
+                    firstChunk.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    throwable.printStackTrace();
+                    terminalSignals.incrementAndGet();
+                }
+
+                @Override
+                public void onComplete() {
+                    terminalSignals.incrementAndGet();
+                }
+            });
+            assertTrue(firstChunk.await(10, TimeUnit.SECONDS));
+
+            // Every signal runs on the executor: once it is terminated, nothing can be delivered anymore
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(1, chunks.get());
+            assertEquals(0, terminalSignals.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -6,12 +6,37 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.Resource;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 @SpringBootTest
 public class SequenceInputStreamTests {
 
@@ -31,6 +56,243 @@ public class SequenceInputStreamTests {
         read(System.err::print, sequenceInputStream);
     }
 
+    @Test
+    void testPublisher() throws Exception {
+        CompositeSequenceInputStream compositeSequenceInputStream = new CompositeSequenceInputStream()
+                .addInputStream(new FileInputStream(resource.getFile().getPath()))
+                .addInputStream(new FileInputStream(resource.getFile().getPath()));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Flow.Publisher<ByteBuffer> publisher = compositeSequenceInputStream.publisher(256, executor);
+            CompletableFuture<Long> done = new CompletableFuture<>();
+            publisher.subscribe(new Flow.Subscriber<>() {
+                private Flow.Subscription subscription;
+                private long bytes;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(ByteBuffer chunk) {
+                    bytes += chunk.remaining();
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    done.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    done.complete(bytes);
+                }
+            });
+            assertEquals(2 * Files.size(resource.getFile().toPath()), done.get(10, TimeUnit.SECONDS).longValue());
+
+            // The streams are read, a second subscriber is refused
+            CompletableFuture<Throwable> error = new CompletableFuture<>();
+            publisher.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(ByteBuffer chunk) {
+                    error.complete(null);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    error.complete(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    error.complete(null);
+                }
+            });
+            assertInstanceOf(IllegalStateException.class, error.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testPrefetching() throws Exception {
+        Path path = resource.getFile().toPath();
+        byte[] content = Files.readAllBytes(path);
+
+        // Each part only opens once all of them are opening: read one after the other, the first one would time out
+        CountDownLatch opening = new CountDownLatch(4);
+        CompositeSequenceInputStream compositeSequenceInputStream = new CompositeSequenceInputStream()
+                .addInputStream(new FileInputStream(path.toFile()));
+        for (int i = 0; i < 4; i++) {
+            compositeSequenceInputStream.addSource(() -> {
+                opening.countDown();
+                if (!opening.await(10, TimeUnit.SECONDS))
+                    throw new IOException("The parts were not opened concurrently");
+                return Files.newInputStream(path);
+            });
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream inputStream = compositeSequenceInputStream.getPrefetchingInputStream(5, 1024 * 1024)) {
+            // A few bytes one at a time, a bulk read, then the rest at once
+            for (int i = 0; i < 10; i++) {
+                out.write(inputStream.read());
+            }
+            byte[] bytes = new byte[4096];
+            int bytesRead = inputStream.read(bytes, 0, bytes.length);
+            out.write(bytes, 0, bytesRead);
+            inputStream.transferTo(out);
+            assertEquals(-1, inputStream.read());
+        }
+        System.err.println("Read 5 parts: " + out.size() + " bytes");
+
+        byte[] expected = new byte[content.length * 5];
+        for (int i = 0; i < 5; i++) {
+            System.arraycopy(content, 0, expected, i * content.length, content.length);
+        }
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    void testLazySources() throws IOException {
+        AtomicInteger opened = new AtomicInteger();
+        AtomicBoolean closed = new AtomicBoolean();
+        Callable<InputStream> source = () -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(new byte[10]);
+        };
+        SequenceInputStream sequenceInputStream = new CompositeSequenceInputStream()
+                .addSource(source)
+                .addSource(source)
+                .addInputStream(new ByteArrayInputStream(new byte[10]) {
+                    @Override
+                    public void close() {
+                        closed.set(true);
+                    }
+                })
+                .addSource(source)
+                .getCompositeSequenceInputStream();
+
+        // Nothing is opened before it is read
+        assertEquals(0, opened.get());
+        assertEquals(10, sequenceInputStream.readNBytes(10).length);
+        assertEquals(1, opened.get());
+
+        // Closing opens none of the sources left, and closes the one added already open
+        sequenceInputStream.close();
+        assertEquals(1, opened.get());
+        assertTrue(closed.get());
+        assertEquals(-1, sequenceInputStream.read());
+
+        // Every source is read, in order, whatever the way
+        CompositeSequenceInputStream compositeSequenceInputStream = new CompositeSequenceInputStream();
+        for (int i = 0; i < 3; i++) {
+            byte[] part = {(byte) i, (byte) i};
+            compositeSequenceInputStream.addSource(() -> new ByteArrayInputStream(part));
+        }
+        byte[] expected = {0, 0, 1, 1, 2, 2};
+        try (SequenceInputStream inputStream = compositeSequenceInputStream.getCompositeSequenceInputStream()) {
+            assertArrayEquals(expected, inputStream.readAllBytes());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SequenceInputStream inputStream = compositeSequenceInputStream.getCompositeSequenceInputStream()) {
+            assertEquals(expected.length, inputStream.transferTo(out));
+        }
+        assertArrayEquals(expected, out.toByteArray());
+
+        // A source that cannot be opened fails the read reaching it, not getCompositeSequenceInputStream
+        SequenceInputStream failing = new CompositeSequenceInputStream()
+                .addInputStream(new ByteArrayInputStream(new byte[10]))
+                .addSource(() -> new FileInputStream("missing.bin"))
+                .getCompositeSequenceInputStream();
+        try (failing) {
+            assertEquals(10, failing.readNBytes(10).length);
+            assertThrows(FileNotFoundException.class, failing::read);
+        }
+    }
+
+    @Test
+    void testPrefetchingOrder() throws IOException {
+        // Small buffers, the parts ahead wait for the reader
+        CompositeSequenceInputStream compositeSequenceInputStream = new CompositeSequenceInputStream();
+        byte[] expected = new byte[0];
+        for (int i = 0; i < 20; i++) {
+            byte[] part = new byte[1000 + i * 997];
+            Arrays.fill(part, (byte) i);
+            compositeSequenceInputStream.addInputStream(new ByteArrayInputStream(part));
+            int offset = expected.length;
+            expected = Arrays.copyOf(expected, offset + part.length);
+            System.arraycopy(part, 0, expected, offset, part.length);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (InputStream inputStream = compositeSequenceInputStream.getPrefetchingInputStream(3, 2048, executor)) {
+            assertArrayEquals(expected, inputStream.readAllBytes());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testPrefetchingBufferSize() throws Exception {
+        // 100000 bytes read ahead: a chunk of 64 KB and one of the 34464 bytes left, not two whole chunks
+        AtomicLong readAhead = new AtomicLong();
+        InputStream source = new ByteArrayInputStream(new byte[1024 * 1024]) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int bytesRead = super.read(b, off, len);
+                readAhead.addAndGet(Math.max(bytesRead, 0));
+                return bytesRead;
+            }
+        };
+        AtomicReference<Thread> sourceThread = new AtomicReference<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            sourceThread.set(thread);
+            return thread;
+        });
+        try (InputStream inputStream = new CompositeSequenceInputStream()
+                .addInputStream(source)
+                .getPrefetchingInputStream(1, 100_000, executor)) {
+            // Once its buffer is full, the source waits for the reader
+            awaitTrue(() -> sourceThread.get().getState() == Thread.State.WAITING);
+            assertEquals(100_000, readAhead.get());
+            assertEquals(1024 * 1024, inputStream.readAllBytes().length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testPrefetchingFailure() throws IOException {
+        InputStream inputStream = new CompositeSequenceInputStream()
+                .addInputStream(new ByteArrayInputStream(new byte[100]))
+                .addSource(() -> new FileInputStream("missing.bin"))
+                .getPrefetchingInputStream(2, 1024);
+        try (inputStream) {
+            // The bytes of the first part come first, the error only once the second one is reached
+            assertEquals(100, inputStream.readNBytes(100).length);
+            assertThrows(IOException.class, inputStream::read);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in 10 s");
+            Thread.sleep(10);
+        }
+    }
+
     void read(Consumer<Character> consumer, InputStream inputStream) throws IOException {
         try {
             int bytesRead = 0;
@@ -4,8 +4,28 @@ import com.example.io.Serialize;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InvalidClassException;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 public class SerializationTests {
@@ -20,6 +40,236 @@ public class SerializationTests {
         System.err.println(myClass.toString());
     }
 
+    @Test
+    void testBinaryCodec() throws IOException, ClassNotFoundException {
+        Order order = new Order(42L, "test", Status.SHIPPED, new Customer("name", -1),
+                List.of(new Line("first", 1, 9.99), new Line("second", 300, 0.5)), null, new byte[]{1, 2, 3});
+
+        byte[] jdkBytes = Serialize.serialize(order, Serialize.JDK);
+        byte[] binaryBytes = Serialize.serialize(order, Serialize.BINARY);
+        System.err.println("JDK: " + jdkBytes.length + " bytes, binary: " + binaryBytes.length + " bytes");
+        assertTrue(binaryBytes.length * 4 < jdkBytes.length);
+
+        Order decoded = Serialize.deserialize(binaryBytes, Order.class, Serialize.BINARY);
+        assertEquals(order.id(), decoded.id());
+        assertEquals(order.lines(), decoded.lines());
+        assertEquals(order.customer(), decoded.customer());
+        assertEquals(Status.SHIPPED, decoded.status());
+        assertNull(decoded.note());
+        assertEquals(3, decoded.attachment().length);
+
+        // The payload of a class, decoded as another one
+        assertThrows(InvalidClassException.class,
+                () -> Serialize.deserialize(binaryBytes, Line.class, Serialize.BINARY));
+    }
+
+    @Test
+    void testBinaryCodecFallback() throws IOException, ClassNotFoundException {
+        // No no-arg constructor: Java serialization
+        BinaryCodec codec = new BinaryCodec();
+        assertFalse(codec.supports(MyClass.class));
+
+        byte[] bytes = codec.encode(new MyClass("test", 1));
+        assertEquals(new MyClass("test", 1).toString(), codec.decode(bytes, MyClass.class).toString());
+        assertNull(codec.decode(codec.encode(null), Object.class));
+
+        // Recursive: Java serialization, which keeps the cycle
+        assertFalse(codec.supports(Node.class));
+        assertFalse(codec.supports(Graph.class));
+        Node node = new Node("loop");
+        node.next = node;
+        Node decoded = codec.decode(codec.encode(node), Node.class);
+        assertEquals("loop", decoded.name);
+        assertSame(decoded, decoded.next);
+
+        // Not recursive, but written by value: a shared object is decoded as two copies
+        Customer customer = new Customer("shared", 1);
+        Pair pair = codec.decode(codec.encode(new Pair(customer, customer)), Pair.class);
+        assertEquals(pair.first(), pair.second());
+        assertNotSame(pair.first(), pair.second());
+
+        // A supported class is never decoded by the fallback, whatever the bytes
+        byte[] jdkBytes = Serialize.serialize(new Customer("jdk", 1), Serialize.JDK);
+        assertThrows(StreamCorruptedException.class, () -> codec.decode(jdkBytes, Customer.class));
+        assertNull(codec.decode(codec.encode(null), Customer.class));
+
+        // The fallback only accepts the classes the requested type leads to
+        byte[] nodeBytes = Serialize.serialize(node, Serialize.JDK);
+        assertThrows(InvalidClassException.class, () -> codec.decode(nodeBytes, MyClass.class));
+        assertThrows(InvalidClassException.class,
+                () -> Serialize.deserialize(nodeBytes, MyClass.class, Serialize.BINARY));
+    }
+
+    @Test
+    void testStreams() throws IOException {
+        List<Line> lines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            lines.add(new Line("product-" + i, i, i / 100.0));
+        }
+
+        for (Codec codec : List.of(Serialize.JDK, Serialize.BINARY, new ByteArrayCodec())) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ObjectWriter<Line> writer = Serialize.writer(out, Line.class, codec)) {
+                writer.writeAll(lines);
+            }
+            System.err.println(codec.getClass().getSimpleName() + ": " + out.size() / lines.size()
+                    + " bytes per object");
+
+            List<Line> read = new ArrayList<>();
+            try (ObjectReader<Line> reader = Serialize.reader(new ByteArrayInputStream(out.toByteArray()), Line.class,
+                    codec)) {
+                reader.forEachRemaining(read::add);
+            }
+            assertEquals(lines, read);
+        }
+    }
+
+    @Test
+    void testFlyweight() throws IOException {
+        FixedLayout<Employee> layout = FixedLayout.of(Employee.class);
+        System.err.println(layout);
+        assertEquals(4 + 8 + 1, layout.getRecordSize());
+
+        Path path = Files.createTempFile("employees", ".bin");
+        try {
+            try (ObjectWriter<Employee> writer = layout.newWriter(Files.newOutputStream(path))) {
+                for (int i = 0; i < 10_000; i++) {
+                    writer.write(new Employee(i, 1000.0 * (i % 100), i % 3 == 0));
+                }
+            }
+
+            try (FileChannel fileChannel = FileChannel.open(path)) {
+                MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+
+                // Only the salary and active flag of every record are read
+                FixedLayout.DoubleField salary = layout.doubleField("salary");
+                FixedLayout.BooleanField active = layout.booleanField("active");
+                FixedLayout.Flyweight<Employee> cursor = Serialize.flyweight(buffer, Employee.class);
+                assertEquals(10_000, cursor.count());
+
+                int highEarners = 0;
+                Employee last = null;
+                while (cursor.next()) {
+                    if (active.get(cursor) && salary.get(cursor) >= 99_000.0) {
+                        highEarners++;
+                        last = cursor.materialize();
+                    }
+                }
+                // i % 100 == 99 and i % 3 == 0
+                assertEquals(34, highEarners);
+                assertEquals(new Employee(9999, 99_000.0, true), last);
+                assertEquals(new Employee(42, 42_000.0, true), cursor.moveTo(42).materialize());
+                assertEquals(42, layout.intField("id").get(cursor));
+            }
+        } finally {
+            Files.delete(path);
+        }
+
+        assertEquals(new Employee(7, 1.5, false), layout.decode(layout.encode(new Employee(7, 1.5, false))));
+        assertThrows(IllegalArgumentException.class, () -> layout.intField("salary"));
+        assertThrows(IllegalArgumentException.class, () -> FixedLayout.of(Line.class));
+        assertThrows(IllegalArgumentException.class, () -> FixedLayout.of(Empty.class));
+
+        // A field reads the records of its own layout only
+        FixedLayout<Point> pointLayout = FixedLayout.of(Point.class);
+        FixedLayout.Flyweight<Point> points = pointLayout.flyweight(ByteBuffer.wrap(
+                pointLayout.encode(new Point(1, 2))));
+        assertTrue(points.next());
+        assertEquals(2, pointLayout.intField("y").get(points));
+        assertThrows(IllegalArgumentException.class, () -> layout.intField("id").get(points));
+    }
+
+    record Employee(int id, double salary, boolean active) {
+    }
+
+    record Point(int x, int y) {
+    }
+
+    record Empty() {
+    }
+
+    /**
+     * A codec with the default streams, a frame per payload.
+     */
+    private static class ByteArrayCodec implements Codec {
+
+        @Override
+        public byte[] encode(Object object) throws IOException {
+            return Serialize.BINARY.encode(object);
+        }
+
+        @Override
+        public <T> T decode(byte[] bytes, Class<T> type) throws IOException, ClassNotFoundException {
+            return Serialize.BINARY.decode(bytes, type);
+        }
+    }
+
+    enum Status {
+        CREATED, SHIPPED
+    }
+
+    record Line(String product, int quantity, double price) implements Serializable {
+    }
+
+    record Order(long id, String reference, Status status, Customer customer, List<Line> lines, String note,
+                 byte[] attachment) implements Serializable {
+    }
+
+    /**
+     * A plain class, with a no-arg constructor.
+     */
+    static class Customer implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+        private Integer rank;
+
+        Customer() {
+        }
+
+        Customer(String name, Integer rank) {
+            this.name = name;
+            this.rank = rank;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Customer customer && Objects.equals(name, customer.name)
+                    && Objects.equals(rank, customer.rank);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, rank);
+        }
+    }
+
+    record Pair(Customer first, Customer second) implements Serializable {
+    }
+
+    /**
+     * A recursive class, its instances may reference themselves.
+     */
+    static class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+        private Node next;
+
+        Node() {
+        }
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Reaches a recursive class through a list.
+     */
+    record Graph(List<Node> nodes) implements Serializable {
+    }
+
     private static class MyClass implements Serializable {
         private static final long serialVersionUID = 1L;
 
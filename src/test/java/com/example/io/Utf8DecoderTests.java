@@ -0,0 +1,82 @@
+package com.example.io;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class Utf8DecoderTests {
+
+    @Test
+    void test() throws MalformedInputException {
+        Utf8Decoder decoder = Utf8Decoder.forCharset(StandardCharsets.UTF_8);
+
+        // ASCII runs of every length around the 8 byte words, with 2, 3 and 4 byte sequences in between
+        Random random = new Random(42);
+        int[] codePoints = {0xE9, 0x20AC, 0x1F600, 0x7FF, 0x800, 0xFFFF, 0x10000, 0x10FFFF};
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            int ascii = random.nextInt(20);
+            for (int j = 0; j < ascii; j++) {
+                text.append((char) (' ' + random.nextInt(95)));
+            }
+            text.appendCodePoint(codePoints[random.nextInt(codePoints.length)]);
+        }
+        String expected = text.toString();
+
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            ByteBuffer source = ByteBuffer.wrap(expected.getBytes(StandardCharsets.UTF_8)).order(order);
+            char[] chars = new char[source.remaining()];
+            int length = decoder.decode(source, chars, 0, true);
+            assertEquals(expected, new String(chars, 0, length));
+            assertEquals(source.limit(), source.position());
+        }
+    }
+
+    @Test
+    void testCutSequence() throws MalformedInputException {
+        Utf8Decoder decoder = Utf8Decoder.forCharset(StandardCharsets.UTF_8);
+        byte[] bytes = "abc\u20ac".getBytes(StandardCharsets.UTF_8);
+        char[] chars = new char[bytes.length];
+
+        // The euro sign cut after its second byte is left in the source
+        ByteBuffer source = ByteBuffer.wrap(bytes, 0, 5);
+        assertEquals(3, decoder.decode(source, chars, 0, false));
+        assertEquals(3, source.position());
+
+        assertThrows(MalformedInputException.class, () -> decoder.decode(source, chars, 0, true));
+    }
+
+    @Test
+    void testMalformed() {
+        Utf8Decoder decoder = Utf8Decoder.forCharset(StandardCharsets.UTF_8);
+        byte[][] malformed = {
+                {(byte) 0x80},                                     // Continuation byte without a lead
+                {(byte) 0xC0, (byte) 0xAF},                        // Overlong
+                {(byte) 0xE0, (byte) 0x80, (byte) 0xAF},           // Overlong
+                {(byte) 0xED, (byte) 0xA0, (byte) 0x80},           // Surrogate
+                {(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80}, // Above U+10FFFF
+                {(byte) 0xE2, (byte) 0x41, (byte) 0x41},           // Missing continuation byte
+        };
+        for (byte[] bytes : malformed) {
+            assertThrows(MalformedInputException.class,
+                    () -> decoder.decode(ByteBuffer.wrap(bytes), new char[bytes.length], 0, true));
+        }
+
+        Utf8Decoder asciiDecoder = Utf8Decoder.forCharset(StandardCharsets.US_ASCII);
+        byte[] bytes = "plain ascii \u00e9".getBytes(StandardCharsets.UTF_8);
+        assertThrows(MalformedInputException.class,
+                () -> asciiDecoder.decode(ByteBuffer.wrap(bytes), new char[bytes.length], 0, true));
+
+        assertNull(Utf8Decoder.forCharset(StandardCharsets.ISO_8859_1));
+    }
+}
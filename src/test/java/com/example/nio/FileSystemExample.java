@@ -8,6 +8,7 @@ import org.springframework.core.io.Resource;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.stream.Stream;
 
 @SpringBootTest
 public class FileSystemExample {
@@ -20,7 +21,7 @@ public class FileSystemExample {
         Path directoryPath = Paths.get(resource.getURI().getPath());
         listAndFilterDirectoryContents(directoryPath);
         traverseDirectoryTree(directoryPath);
-        visitDirectoryOrFile(directoryPath);
+        walkDirectoryTree(directoryPath);
         watchDirectory(directoryPath);
     }
 
@@ -54,22 +55,13 @@ public class FileSystemExample {
         System.out.println();
     }
 
-    // 3. Visiting directory or file
-    private static void visitDirectoryOrFile(Path directoryPath) throws IOException {
-        System.out.println("Visiting directory or file:");
-        Files.walkFileTree(directoryPath, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                System.out.println("File: " + file.getFileName());
-                return FileVisitResult.CONTINUE;
-            }
-
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                System.out.println("Directory: " + dir.getFileName());
-                return FileVisitResult.CONTINUE;
-            }
-        });
+    // 3. Walking the directory tree in parallel
+    private static void walkDirectoryTree(Path directoryPath) throws IOException {
+        System.out.println("Walking directory tree in parallel:");
+        try (Stream<ParallelTreeWalker.Entry> entries = new ParallelTreeWalker(directoryPath).stream()) {
+            entries.forEach(entry -> System.out.println(
+                    (entry.attributes().isDirectory() ? "Directory: " : "File: ") + entry.path().getFileName()));
+        }
         System.out.println();
     }
 
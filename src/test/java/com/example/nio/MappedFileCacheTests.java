@@ -0,0 +1,67 @@
+package com.example.nio;
+
+import com.example.nio.media.MappedFileCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@SpringBootTest
+public class MappedFileCacheTests {
+
+    @Value("classpath:sample.mp3")
+    Resource audioResource;
+
+    @Value("classpath:roman_empire_history.txt")
+    Resource textResource;
+
+    @Test
+    void test() throws IOException {
+        Path audio = audioResource.getFile().toPath();
+        Path text = textResource.getFile().toPath();
+
+        // Small segments, so the file spans several mappings
+        MappedFileCache cache = new MappedFileCache(Files.size(audio) + Files.size(text), 100_000);
+
+        MappedFileCache.MappedFile mappedAudio = cache.get(audio);
+        assertSame(mappedAudio, cache.get(audio));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        // Reading the mapping slice by slice gives back the file content
+        byte[] expected = Files.readAllBytes(audio);
+        byte[] actual = new byte[expected.length];
+        long position = 0;
+        while (position < mappedAudio.size()) {
+            ByteBuffer slice = mappedAudio.slice(position);
+            int length = slice.remaining();
+            slice.get(actual, (int) position, length);
+            position += length;
+        }
+        assertEquals(ByteBuffer.wrap(expected), ByteBuffer.wrap(actual));
+
+        // Both files fit in the budget
+        cache.get(text);
+        assertEquals(Files.size(audio) + Files.size(text), cache.getMappedBytes());
+        assertEquals(0, cache.getEvictions());
+
+        // Audio was used least recently, it is evicted once the budget only fits the text
+        MappedFileCache smallCache = new MappedFileCache(Files.size(audio), 100_000);
+        smallCache.get(audio);
+        smallCache.get(text);
+        smallCache.get(text);
+        assertEquals(1, smallCache.getEvictions());
+        assertEquals(Files.size(text), smallCache.getMappedBytes());
+
+        System.err.println(cache);
+        System.err.println(smallCache);
+    }
+}
@@ -50,6 +50,9 @@ public class MediaStreamingTests {
     }
 
     private static void processByteBufferData(ByteBuffer buffer) {
-        System.err.println(new String(Base64.getEncoder().encode(buffer.array())));
+        // The buffer is direct, its bytes have to be copied out
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        System.err.println(new String(Base64.getEncoder().encode(bytes)));
     }
 }
@@ -0,0 +1,148 @@
+package com.example.nio;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class ParallelTreeWalkerTests {
+
+    @Test
+    void test() throws IOException {
+        Path root = createTree();
+        try {
+            Set<Path> expected;
+            try (Stream<Path> paths = Files.walk(root)) {
+                expected = paths.filter(path -> !path.equals(root)).collect(Collectors.toSet());
+            }
+
+            List<ParallelTreeWalker.Entry> entries;
+            try (Stream<ParallelTreeWalker.Entry> stream = new ParallelTreeWalker(root).stream()) {
+                entries = stream.toList();
+            }
+            assertEquals(expected, entries.stream().map(ParallelTreeWalker.Entry::path).collect(Collectors.toSet()));
+            assertEquals(expected.size(), entries.size());
+            for (ParallelTreeWalker.Entry entry : entries) {
+                assertEquals(Files.isDirectory(entry.path()), entry.attributes().isDirectory());
+                assertEquals(root.relativize(entry.path()).getNameCount(), entry.depth());
+            }
+
+            // Filters: the text files of the whole tree, outside of the directories named skip
+            try (Stream<ParallelTreeWalker.Entry> stream = new ParallelTreeWalker(root)
+                    .setGlob("**.txt")
+                    .setDirectoryMatcher(path -> !path.getFileName().toString().equals("skip"))
+                    .setParallelism(16)
+                    .setQueueCapacity(8)
+                    .stream()) {
+                List<ParallelTreeWalker.Entry> textFiles = stream.toList();
+                assertEquals(expected.stream()
+                        .filter(path -> path.toString().endsWith(".txt") && !path.toString().contains("skip"))
+                        .count(), textFiles.size());
+            }
+
+            try (Stream<ParallelTreeWalker.Entry> stream = new ParallelTreeWalker(root).setMaxDepth(1).stream()) {
+                assertTrue(stream.allMatch(entry -> entry.depth() == 1));
+            }
+
+            // At the max depth the entries rejected by the matcher are not even read
+            try (Stream<ParallelTreeWalker.Entry> stream = new ParallelTreeWalker(root)
+                    .setMaxDepth(1)
+                    .setGlob("*.txt")
+                    .stream()) {
+                assertEquals(5, stream.filter(entry -> entry.attributes().isRegularFile()).count());
+            }
+
+            // Closing the stream early stops the walk
+            try (Stream<ParallelTreeWalker.Entry> stream = new ParallelTreeWalker(root).setQueueCapacity(1).stream()) {
+                assertEquals(5, stream.limit(5).count());
+            }
+
+            // A matcher failing stops the walk, the stream rethrows its exception
+            try (Stream<ParallelTreeWalker.Entry> stream = new ParallelTreeWalker(root)
+                    .setMatcher(path -> {
+                        if (path.getFileName().toString().equals("dir3"))
+                            throw new IllegalStateException("Cannot match " + path);
+                        return true;
+                    })
+                    .stream()) {
+                assertThrows(IllegalStateException.class, stream::count);
+            }
+
+            assertThrows(NotDirectoryException.class,
+                    () -> new ParallelTreeWalker(root.resolve("file0.txt")).stream());
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test
+    void testErrors() throws IOException {
+        Path root = createTree();
+        Path unreadable = root.resolve("dir0");
+        try {
+            Files.setPosixFilePermissions(unreadable, PosixFilePermissions.fromString("---------"));
+            if (Files.isReadable(unreadable)) {
+                // Running as root: every directory can be listed
+                return;
+            }
+
+            try (Stream<ParallelTreeWalker.Entry> stream = new ParallelTreeWalker(root).stream()) {
+                assertThrows(UncheckedIOException.class, stream::count);
+            }
+
+            List<Path> failed = new CopyOnWriteArrayList<>();
+            try (Stream<ParallelTreeWalker.Entry> stream = new ParallelTreeWalker(root)
+                    .setErrorHandler((directory, e) -> failed.add(directory))
+                    .stream()) {
+                assertTrue(stream.count() > 0);
+            }
+            assertEquals(List.of(unreadable), failed);
+        } finally {
+            Files.setPosixFilePermissions(unreadable, PosixFilePermissions.fromString("rwx------"));
+            delete(root);
+        }
+    }
+
+    /**
+     * 3 levels of 6 directories, one of them named skip, with 10 files each.
+     */
+    private static Path createTree() throws IOException {
+        Path root = Files.createTempDirectory("tree");
+        createLevel(root, 3);
+        return root;
+    }
+
+    private static void createLevel(Path directory, int levels) throws IOException {
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(directory.resolve("file" + i + (i % 2 == 0 ? ".txt" : ".bin")), "content " + i);
+        }
+        if (levels == 0)
+            return;
+        for (int i = 0; i < 6; i++) {
+            Path subdirectory = Files.createDirectory(directory.resolve(i == 5 ? "skip" : "dir" + i));
+            createLevel(subdirectory, levels - 1);
+        }
+    }
+
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
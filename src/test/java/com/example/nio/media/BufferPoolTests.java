@@ -0,0 +1,56 @@
+package com.example.nio.media;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class BufferPoolTests {
+
+    @Test
+    void test() {
+        BufferPool bufferPool = new BufferPool(true);
+
+        // Served by the smallest size class that fits
+        ByteBuffer buffer = bufferPool.acquire(1000);
+        assertTrue(buffer.isDirect());
+        assertEquals(1024, buffer.capacity());
+        assertEquals(1000, buffer.limit());
+
+        // Released to the thread cache, the next acquire of the class gets it back
+        bufferPool.release(buffer);
+        assertSame(buffer, bufferPool.acquire(600));
+        bufferPool.release(buffer);
+
+        assertEquals(2, bufferPool.getAcquired());
+        assertEquals(2, bufferPool.getReleased());
+        assertEquals(1, bufferPool.getAllocated());
+        assertEquals(0, bufferPool.getOutstanding());
+
+        // Debug mode detects a second release
+        assertThrows(IllegalStateException.class, () -> bufferPool.release(buffer));
+        assertThrows(IllegalArgumentException.class, () -> bufferPool.release(ByteBuffer.allocate(1024)));
+
+        System.err.println(bufferPool);
+    }
+
+    @Test
+    void testLeak() throws InterruptedException {
+        BufferPool bufferPool = new BufferPool(true);
+
+        // Acquired and dropped without release
+        bufferPool.acquire(512);
+
+        for (int i = 0; i < 50 && bufferPool.getLeaks() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, bufferPool.getLeaks());
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.nio.media;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+public class ClientAudioTests {
+
+    /**
+     * No server listening: the connections are refused, at once or once connecting, and give their buffers back.
+     */
+    @Test
+    void testRefused() {
+        BufferPool bufferPool = new BufferPool(false);
+        ClientAudio client = new ClientAudio(bufferPool);
+        try {
+            client.process(4, connection -> byteBuffer -> byteBuffer.position(byteBuffer.limit()));
+        } catch (IOException e) {
+            System.err.println("Connection refused: " + e);
+        }
+
+        assertEquals(0, client.getConnections());
+        assertEquals(0, bufferPool.getOutstanding());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.nio.media;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class CommandParserTests {
+
+    @Test
+    void test() throws IOException {
+        ByteBuffer frames = ByteBuffer.allocate(64);
+        Command.writeSeek(frames, 4096);
+        Command.PLAY.writeTo(frames);
+        Command.STOP.writeTo(frames);
+        frames.flip();
+
+        CommandParser parser = new CommandParser();
+
+        // The SEEK frame split across two reads
+        read(parser, frames, 6);
+        assertNull(parser.next());
+
+        // The rest of the SEEK frame, pipelined with PLAY and STOP
+        read(parser, frames, frames.remaining());
+        assertEquals(Command.SEEK, parser.next());
+        assertEquals(4096L, parser.getPayload().getLong());
+        assertEquals(Command.PLAY, parser.next());
+        assertEquals(Command.STOP, parser.next());
+        assertNull(parser.next());
+    }
+
+    @Test
+    void testInvalidFrame() throws IOException {
+        CommandParser parser = new CommandParser();
+
+        read(parser, ByteBuffer.wrap(new byte[]{42, 0, 0, 0, 0}), 5);
+        assertThrows(ProtocolException.class, parser::next);
+
+        parser = new CommandParser();
+        read(parser, ByteBuffer.wrap(new byte[]{Command.SEEK.getOpcode(), 0, 0, 0, 2, 1, 2}), 7);
+        assertThrows(ProtocolException.class, parser::next);
+    }
+
+    private static void read(CommandParser parser, ByteBuffer frames, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        frames.get(bytes);
+        parser.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.nio.media;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class OutboundQueueTests {
+
+    @Test
+    void test() throws IOException {
+        BufferPool bufferPool = new BufferPool(true);
+        OutboundQueue queue = new OutboundQueue(
+                new FlowControl(8 * 1024, 32 * 1024, FlowControl.SlowConsumerPolicy.DROP, 1000), bufferPool);
+
+        // Fill up to the high watermark
+        while (queue.isWritable()) {
+            ByteBuffer chunk = queue.allocateChunk();
+            chunk.position(chunk.limit()).flip();
+            queue.add(chunk);
+        }
+        assertEquals(32 * 1024, queue.getQueuedBytes());
+
+        // The socket only accepts part of the queue: still above the low watermark, so not writable
+        LimitedChannel channel = new LimitedChannel(20 * 1024);
+        assertEquals(20 * 1024, queue.writeTo(channel));
+        assertEquals(12 * 1024, queue.getQueuedBytes());
+        assertFalse(queue.isWritable());
+
+        // The socket accepts nothing
+        assertEquals(0, queue.writeTo(channel));
+        assertFalse(queue.isWritable());
+
+        // Drained down to the low watermark, writable again
+        channel.limit = 4 * 1024;
+        queue.writeTo(channel);
+        assertEquals(8 * 1024, queue.getQueuedBytes());
+        assertTrue(queue.isWritable());
+
+        // The chunk written completely went back to the pool, clearing gives back the other one
+        assertEquals(1, bufferPool.getReleased());
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getQueuedBytes());
+        assertEquals(0, bufferPool.getOutstanding());
+    }
+
+    /**
+     * A channel accepting a limited number of bytes, like a socket with a full send buffer.
+     */
+    private static class LimitedChannel implements GatheringByteChannel {
+
+        private long limit;
+
+        LimitedChannel(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                int count = (int) Math.min(limit, srcs[i].remaining());
+                srcs[i].position(srcs[i].position() + count);
+                limit -= count;
+                written += count;
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            return (int) write(new ByteBuffer[]{src});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
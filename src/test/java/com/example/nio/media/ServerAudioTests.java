@@ -0,0 +1,74 @@
+package com.example.nio.media;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class ServerAudioTests {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Value("classpath:sample.mp3")
+    Resource resource;
+
+    /**
+     * Reactor mode: the connections are spread round-robin over the workers, which count them and the bytes they
+     * send.
+     */
+    @Test
+    void testWorkers() throws IOException, InterruptedException {
+        ServerAudio server = new ServerAudio(resource.getFile().getPath())
+                .transferMode(ServerAudio.TransferMode.ZERO_COPY)
+                .workers(2);
+        Thread serverThread = new Thread(server::process, "audio-server");
+        serverThread.start();
+
+        ClientAudio client = new ClientAudio();
+        Thread clientThread = new Thread(() -> {
+            try {
+                client.process(4, connection -> byteBuffer -> byteBuffer.position(byteBuffer.limit()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "audio-client");
+
+        try {
+            awaitTrue(() -> server.getWorkers().size() == 2);
+            clientThread.start();
+
+            List<SelectorWorker> workers = server.getWorkers();
+            awaitTrue(() -> workers.stream().mapToInt(SelectorWorker::getConnections).sum() == 4);
+            for (SelectorWorker worker : workers) {
+                System.err.println(worker);
+                assertEquals(2, worker.getConnections());
+            }
+
+            awaitTrue(() -> workers.stream().allMatch(worker -> worker.getBytesSent() > 0));
+            awaitTrue(() -> client.getBytesReceived() > 0);
+            assertTrue(workers.stream().mapToLong(SelectorWorker::getBytesSent).sum() >= client.getBytesReceived());
+        } finally {
+            client.stop();
+            clientThread.join(TIMEOUT_MILLIS);
+            server.closeServer();
+            serverThread.join(TIMEOUT_MILLIS);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in " + TIMEOUT_MILLIS + " ms");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.nio.media;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class TimerWheelTests {
+
+    @Test
+    void test() {
+        // A small wheel driven by a manual clock, so the longest delay needs more than one turn
+        AtomicLong now = new AtomicLong();
+        try (TimerWheel timerWheel = new TimerWheel(null, 10, 8, now::get)) {
+            List<Integer> expired = new CopyOnWriteArrayList<>();
+            timerWheel.schedule(() -> expired.add(300), 300, TimeUnit.MILLISECONDS);
+            timerWheel.schedule(() -> expired.add(50), 50, TimeUnit.MILLISECONDS);
+            timerWheel.schedule(() -> expired.add(0), 0, TimeUnit.MILLISECONDS);
+
+            // Never before the deadline, at the end of its tick at the latest
+            advanceTo(timerWheel, now, 9);
+            assertEquals(List.of(), expired);
+            advanceTo(timerWheel, now, 10);
+            assertEquals(List.of(0), expired);
+            advanceTo(timerWheel, now, 59);
+            assertEquals(List.of(0), expired);
+            advanceTo(timerWheel, now, 60);
+            assertEquals(List.of(0, 50), expired);
+            advanceTo(timerWheel, now, 309);
+            assertEquals(List.of(0, 50), expired);
+            advanceTo(timerWheel, now, 310);
+            assertEquals(List.of(0, 50, 300), expired);
+
+            // Scheduled late, from a time already past several turns
+            timerWheel.schedule(() -> expired.add(1000), 1000, TimeUnit.MILLISECONDS);
+            advanceTo(timerWheel, now, 1309);
+            assertEquals(List.of(0, 50, 300), expired);
+            advanceTo(timerWheel, now, 1320);
+            assertEquals(List.of(0, 50, 300, 1000), expired);
+        }
+    }
+
+    @Test
+    void testThread() throws InterruptedException {
+        try (TimerWheel timerWheel = new TimerWheel("test-timer", 10, 8)) {
+            List<Integer> expired = new CopyOnWriteArrayList<>();
+            CountDownLatch latch = new CountDownLatch(2);
+            timerWheel.schedule(() -> {
+                expired.add(50);
+                latch.countDown();
+            }, 50, TimeUnit.MILLISECONDS);
+            timerWheel.schedule(() -> {
+                expired.add(0);
+                latch.countDown();
+            }, 0, TimeUnit.MILLISECONDS);
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(List.of(0, 50), expired);
+        }
+    }
+
+    private static void advanceTo(TimerWheel timerWheel, AtomicLong now, long millis) {
+        now.set(TimeUnit.MILLISECONDS.toNanos(millis));
+        timerWheel.advance();
+    }
+}